@@ -4,7 +4,17 @@ import main.java.util.AlphanumComparator;
 import main.java.util.Util;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 
 /**
  * Provides information and filtered/sorted lists based on the database.
@@ -13,11 +23,13 @@ import java.util.Comparator;
  */
 
 public class Analytics {
+	public static final int NO_LIMIT = -1;
+
 	/**
 	 * Enumerator to store which sort mode is active
 	 */
 	public enum SortMode{
-		NAMEAZ, NAMEZA,PRIORITY,DATE;
+		NAMEAZ, NAMEZA,PRIORITY,STATUS_PRIORITY,DATE;
 
 		/**
 		 * Displays a SortMode as a String
@@ -34,6 +46,8 @@ public class Analytics {
 					return "Date";
 				case PRIORITY:
 					return "Priority";
+				case STATUS_PRIORITY:
+					return "Status & Priority";
 				default:
 					Util.nyi(Util.getFileName(),Util.getLineNumber());
 					return null;//this line will never be reached
@@ -73,6 +87,561 @@ public class Analytics {
 		}
 	}
 
+	/**
+	 * A filtered and sorted list of a database's items which keeps itself up to date as the database changes.
+	 *
+	 * Each item in the view is kept as a snapshot of the keys it sorts by, so when an item is edited its old position
+	 * can be found with a binary search even if the item was changed in place. Adding, editing or deleting an item
+	 * then costs two binary searches and a shift of the list rather than filtering and sorting everything again.
+	 * Items which sort equally are kept in the order of their IDs, which is the order they were added in.
+	 */
+	public static class View implements Database.Listener{
+		/**
+		 * Receives the changes made to a view, after they are made, so a display of it can be updated in place
+		 */
+		public interface Listener{
+			/**
+			 * Called when an item moves into the view
+			 * @param position the item's position in the view
+			 * @param id the item's ID
+			 */
+			void entryInserted(int position, long id);
+
+			/**
+			 * Called when a run of items moves into the view next to each other, such as part of a batch. By default
+			 * each item is passed to entryInserted in turn.
+			 * @param position the first item's position in the view
+			 * @param ids the items' IDs, in order
+			 */
+			default void entriesInserted(int position, List<Long> ids){
+				for(int i = 0; i < ids.size(); i++){
+					entryInserted(position + i, ids.get(i));
+				}
+			}
+
+			/**
+			 * Called when an item moves out of the view
+			 * @param position the position the item had in the view
+			 * @param id the item's ID
+			 */
+			void entryRemoved(int position, long id);
+
+			/**
+			 * Called when every item in the view has been filtered and sorted again
+			 */
+			void entriesReloaded();
+		}
+
+		/**
+		 * An item in the view along with the keys it was sorted by
+		 */
+		private static class Entry{
+			private final Item item;
+			private final long id;
+			private final int priority;
+			private final int bucket;
+			private final long time;
+			private final AlphanumComparator.Key nameKey;
+
+			private Entry(Item item){
+				this.item = item;
+				this.id = item.getId();
+				this.priority = item.getPriority().ordinal();
+				this.bucket = statusPriorityBucket(item);
+				this.time = item.getTime();
+				this.nameKey = item.getNameKey();
+			}
+		}
+
+		private final Database database;
+		private final FilterMode filterMode;
+		private final SortMode sortMode;
+		private final Comparator<Entry> order;
+		private final ArrayList<Entry> entries;
+		private final HashMap<Long,Entry> byId;
+		private Listener listener;
+
+		/**
+		 * Gets the order entries are kept in for a SortMode
+		 * @param mode the SortMode
+		 * @return the order, ending with the ID so no two entries are equal
+		 */
+		private static Comparator<Entry> order(SortMode mode){
+			Comparator<Entry> byKey;
+			switch(mode){
+				case NAMEAZ:
+					byKey = (Entry o1, Entry o2) -> o1.nameKey.compareTo(o2.nameKey);
+					break;
+				case NAMEZA:
+					byKey = (Entry o1, Entry o2) -> o2.nameKey.compareTo(o1.nameKey);
+					break;
+				case PRIORITY:
+					byKey = Comparator.comparingInt((Entry a) -> a.priority);
+					break;
+				case STATUS_PRIORITY:
+					byKey = Comparator.comparingInt((Entry a) -> a.bucket).thenComparingLong((Entry a) -> a.time);
+					break;
+				case DATE:
+					byKey = Comparator.comparingLong((Entry a) -> a.time);
+					break;
+				default:
+					Util.nyi(Util.getFileName(),Util.getLineNumber());
+					return null;//this line will never be reached
+			}
+			return byKey.thenComparingLong((Entry a) -> a.id);
+		}
+
+		/**
+		 * Gets the FilterMode of the view
+		 * @return the FilterMode
+		 */
+		public FilterMode getFilterMode(){
+			return filterMode;
+		}
+
+		/**
+		 * Gets the SortMode of the view
+		 * @return the SortMode
+		 */
+		public SortMode getSortMode(){
+			return sortMode;
+		}
+
+		/**
+		 * Gets the number of items in the view
+		 * @return number of items
+		 */
+		public int size(){
+			synchronized (database) {
+				return entries.size();
+			}
+		}
+
+		/**
+		 * Gets an item in the view
+		 * @param index position of the item in the view
+		 * @return the item
+		 */
+		public Item getItem(int index){
+			synchronized (database) {
+				return entries.get(index).item;
+			}
+		}
+
+		/**
+		 * Gets the ID of an item in the view
+		 * @param index position of the item in the view
+		 * @return the ID
+		 */
+		public long getId(int index){
+			synchronized (database) {
+				return entries.get(index).id;
+			}
+		}
+
+		/**
+		 * Checks whether an item is in the view
+		 * @param id the item's ID
+		 * @return true if the item is in the view
+		 */
+		public boolean contains(long id){
+			synchronized (database) {
+				return byId.containsKey(id);
+			}
+		}
+
+		/**
+		 * Finds the position of an item in the view with a binary search on the keys it was sorted by
+		 * @param id the item's ID
+		 * @return the item's position, or -1 if it isn't in the view
+		 */
+		public int indexOf(long id){
+			synchronized (database) {
+				Entry entry = byId.get(id);
+				if(entry == null){
+					return -1;
+				}
+				return Collections.binarySearch(entries, entry, order);
+			}
+		}
+
+		/**
+		 * Gets the IDs of the items in the view
+		 * @return the IDs, in sorted order
+		 */
+		public ArrayList<Long> getIds(){
+			synchronized (database) {
+				ArrayList<Long> out = new ArrayList<>(entries.size());
+				for(Entry a: entries){
+					out.add(a.id);
+				}
+				return out;
+			}
+		}
+
+		/**
+		 * Sets what is told about changes to the view. Changes are reported on the thread which changed the database.
+		 * @param listener the listener, or null for none
+		 */
+		public void setListener(Listener listener){
+			synchronized (database) {
+				this.listener = listener;
+			}
+		}
+
+		/**
+		 * Gets the items in the view along with their positions in the database
+		 * @return the items, in sorted order
+		 */
+		public ArrayList<Database.PositionedItem> getPositionedItems(){
+			synchronized (database) {
+				ArrayList<Database.PositionedItem> out = new ArrayList<>(entries.size());
+				for(Entry a: entries){
+					out.add(new Database.PositionedItem(a.item, database.indexOf(a.id)));
+				}
+				return out;
+			}
+		}
+
+		/**
+		 * Adds an item's entry in its sorted position
+		 * @param a the item
+		 */
+		private void insert(Item a){
+			if(!matches(filterMode, a)){
+				return;
+			}
+			Entry entry = new Entry(a);
+			int at = Collections.binarySearch(entries, entry, order);
+			if(at >= 0){//already in the view
+				return;
+			}
+			entries.add(-(at + 1), entry);
+			byId.put(entry.id, entry);
+			if(listener != null){
+				listener.entryInserted(-(at + 1), entry.id);
+			}
+		}
+
+		/**
+		 * Removes an item's entry, found by the keys it was sorted by when it was added
+		 * @param id the item's ID
+		 */
+		private void remove(long id){
+			Entry entry = byId.remove(id);
+			if(entry == null){
+				return;
+			}
+			int at = Collections.binarySearch(entries, entry, order);
+			if(at >= 0){
+				entries.remove(at);
+				if(listener != null){
+					listener.entryRemoved(at, id);
+				}
+			}
+		}
+
+		/**
+		 * Adds a new item to the view if it passes the filter
+		 * @param item the new item
+		 */
+		@Override
+		public void itemAdded(Item item){
+			insert(item);
+		}
+
+		/**
+		 * Adds a batch of new items to the view by sorting the ones which pass the filter and merging them in from the
+		 * end, so only the entries after the first new one are moved, once each. The listener is told about each run of
+		 * new entries which ended up next to each other, so a batch which sorts after the whole view, as the batches
+		 * of a load in date order do, is one change at the end rather than a reload.
+		 * @param added the new items
+		 */
+		@Override
+		public void itemsAdded(List<Item> added){
+			if(added.size() <= 1){
+				for(Item a: added){
+					insert(a);
+				}
+				return;
+			}
+			ArrayList<Entry> batch = new ArrayList<>();
+			for(Item a: added){
+				if(matches(filterMode, a) && !byId.containsKey(a.getId())){
+					Entry entry = new Entry(a);
+					batch.add(entry);
+					byId.put(entry.id, entry);
+				}
+			}
+			if(batch.isEmpty()){
+				return;
+			}
+			batch.sort(order);
+			int i = entries.size() - 1, j = batch.size() - 1;
+			entries.addAll(batch);//makes room; every slot from the first new entry on is overwritten below
+			int to = entries.size() - 1;
+			int positions[] = new int[batch.size()];
+			while(j >= 0){
+				if(i >= 0 && order.compare(entries.get(i), batch.get(j)) > 0){
+					entries.set(to--, entries.get(i--));
+				}
+				else{
+					positions[j] = to;
+					entries.set(to--, batch.get(j--));
+				}
+			}
+			if(listener == null){
+				return;
+			}
+			int start = 0;
+			for(int k = 1; k <= batch.size(); k++){
+				if(k == batch.size() || positions[k] != positions[k - 1] + 1){
+					ArrayList<Long> ids = new ArrayList<>(k - start);
+					for(int l = start; l < k; l++){
+						ids.add(batch.get(l).id);
+					}
+					listener.entriesInserted(positions[start], ids);//earlier runs are in place, so the position is final
+					start = k;
+				}
+			}
+		}
+
+		/**
+		 * Moves an edited item to its new position, or in or out of the view
+		 * @param item the item as it is now
+		 */
+		@Override
+		public void itemEdited(Item item){
+			remove(item.getId());
+			insert(item);
+		}
+
+		/**
+		 * Removes a deleted item from the view
+		 * @param item the deleted item
+		 */
+		@Override
+		public void itemDeleted(Item item){
+			remove(item.getId());
+		}
+
+		/**
+		 * Filters and sorts every item again
+		 */
+		@Override
+		public void itemsReloaded(){
+			synchronized (database) {
+				entries.clear();
+				byId.clear();
+				for(Item a: database.getItems()){
+					if(matches(filterMode, a)){
+						Entry entry = new Entry(a);
+						entries.add(entry);
+						byId.put(entry.id, entry);
+					}
+				}
+				entries.sort(order);
+				if(listener != null){
+					listener.entriesReloaded();
+				}
+			}
+		}
+
+		/**
+		 * Stops keeping the view up to date
+		 */
+		public void close(){
+			database.removeListener(this);
+		}
+
+		/**
+		 * Constructs a view of a database and subscribes it to the database's changes
+		 * @param database the database to view
+		 * @param filterMode the FilterMode items must pass
+		 * @param sortMode the SortMode to order them by
+		 */
+		public View(Database database, FilterMode filterMode, SortMode sortMode){
+			this.database = database;
+			this.filterMode = filterMode;
+			this.sortMode = sortMode;
+			this.order = order(sortMode);
+			this.entries = new ArrayList<>();
+			this.byId = new HashMap<>();
+			synchronized (database) {
+				itemsReloaded();
+				database.addListener(this);
+			}
+		}
+	}
+
+	/**
+	 * The views of a database, one per FilterMode and SortMode, created when first asked for.
+	 *
+	 * Only the most recently used views are kept up to date; the least recently used one is closed when a new
+	 * view would go over the capacity, and is created again from scratch if it is asked for later.
+	 */
+	public static class Views{
+		public static final int DEFAULT_CAPACITY = 4;
+
+		private final Database database;
+		private final LinkedHashMap<Integer,View> views;
+
+		/**
+		 * Gets the view for a FilterMode and SortMode, creating it if it isn't kept
+		 * @param filterMode the FilterMode items must pass
+		 * @param sortMode the SortMode to order them by
+		 * @return the view
+		 */
+		public View get(FilterMode filterMode, SortMode sortMode){
+			int key = sortMode.ordinal() * FilterMode.values().length + filterMode.ordinal();
+			View out = views.get(key);
+			if(out == null){
+				out = new View(database, filterMode, sortMode);
+				views.put(key, out);
+			}
+			return out;
+		}
+
+		/**
+		 * Closes every kept view
+		 */
+		public void clear(){
+			for(View a: views.values()){
+				a.close();
+			}
+			views.clear();
+		}
+
+		/**
+		 * Constructs an empty set of views with the default capacity
+		 * @param database the database to view
+		 */
+		public Views(Database database){
+			this(database, DEFAULT_CAPACITY);
+		}
+
+		/**
+		 * Constructs an empty set of views
+		 * @param database the database to view
+		 * @param capacity largest number of views to keep up to date
+		 */
+		public Views(Database database, int capacity){
+			this.database = database;
+			this.views = new LinkedHashMap<Integer,View>(16, 0.75f, true){//access order, so the eldest entry is the least recently used
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Integer,View> eldest){
+					if(size() > capacity){
+						eldest.getValue().close();
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+	}
+
+	/**
+	 * The number of items in a database by status and priority, taken all at once from the database's counters
+	 */
+	public static class Statistics{
+		private final int counts[][];//indexed by status, then priority
+		private final int total;
+
+		/**
+		 * Gets the number of items
+		 * @return number of items
+		 */
+		public int getTotal(){
+			return total;
+		}
+
+		/**
+		 * Gets the number of items with a status
+		 * @param status the status
+		 * @return number of items
+		 */
+		public int getCount(Item.Status status){
+			int out = 0;
+			for(int count: counts[status.ordinal()]){
+				out += count;
+			}
+			return out;
+		}
+
+		/**
+		 * Gets the number of items with a priority
+		 * @param priority the priority
+		 * @return number of items
+		 */
+		public int getCount(Item.Priority priority){
+			int out = 0;
+			for(int byPriority[]: counts){
+				out += byPriority[priority.ordinal()];
+			}
+			return out;
+		}
+
+		/**
+		 * Gets the number of items with both a status and a priority
+		 * @param status the status
+		 * @param priority the priority
+		 * @return number of items
+		 */
+		public int getCount(Item.Status status, Item.Priority priority){
+			return counts[status.ordinal()][priority.ordinal()];
+		}
+
+		/**
+		 * Gets the number of items which pass a FilterMode
+		 * @param mode the FilterMode
+		 * @return number of items
+		 */
+		public int getCount(FilterMode mode){
+			switch(mode){
+				case NONE:
+					return total;
+				case HIGH_PRIORITY:
+					return getCount(Item.Priority.HIGH);
+				case MEDIUM_PRIORITY:
+					return getCount(Item.Priority.MEDIUM);
+				case LOW_PRIORITY:
+					return getCount(Item.Priority.LOW);
+				case FINISHED:
+					return getCount(Item.Status.FINISHED);
+				case UNFINISHED:
+					return getCount(Item.Status.UNFINISHED);
+				default:
+					Util.nyi(Util.getFileName(),Util.getLineNumber());
+					return 0;//this line will never be reached
+			}
+		}
+
+		/**
+		 * Constructs a snapshot of a database's counters
+		 * @param database the database to count
+		 */
+		private Statistics(Database database){
+			this.counts = new int[Item.Status.values().length][Item.Priority.values().length];
+			synchronized (database) {
+				for(Item.Status status: Item.Status.values()){
+					for(Item.Priority priority: Item.Priority.values()){
+						this.counts[status.ordinal()][priority.ordinal()] = database.count(status, priority);
+					}
+				}
+				this.total = database.count();
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of items in a database by status and priority, without scanning the items
+	 * @param database the database to count
+	 * @return the counts at this moment
+	 */
+	public static Statistics statistics(Database database){
+		return new Statistics(database);
+	}
+
 	/**
 	 * Sorts the Database by a specified sortmode
 	 * @param mode Desired SortMode
@@ -92,10 +661,188 @@ public class Analytics {
 		else if(mode==SortMode.NAMEZA){
 			return sortNameZA(in);
 		}
+		else if(mode==SortMode.STATUS_PRIORITY){
+			return sortStatusPriority(sortDate(in));
+		}
 		Util.nyi(Util.getFileName(),Util.getLineNumber());
         return new ArrayList<>();//this line will never be reached
 	}
 
+	/**
+	 * Finds the items of a database which pass a filter, in sorted order
+	 * @param database the database to search
+	 * @param filter the FilterMode items must pass
+	 * @param sort the SortMode to order them by
+	 * @return the matching items, sorted
+	 */
+	public static ArrayList<Database.PositionedItem> query(Database database, FilterMode filter, SortMode sort){
+		return query(database, filter, sort, 0, NO_LIMIT);
+	}
+
+	/**
+	 * Finds one page of the items of a database which pass a filter, in sorted order
+	 * @param database the database to search
+	 * @param filter the FilterMode items must pass
+	 * @param sort the SortMode to order them by
+	 * @param offset number of sorted matches to skip
+	 * @param limit largest number of matches to return, or NO_LIMIT
+	 * @return the page of matching items, sorted
+	 */
+	public static ArrayList<Database.PositionedItem> query(Database database, FilterMode filter, SortMode sort, int offset, int limit){
+		List<Item> items = database.getItems();
+		if(items instanceof ItemStore){//test the packed status and priority so only the matching items are built
+			ItemStore store = (ItemStore)items;
+			return query(database, (int i) -> matches(filter, store.getStatus(i), store.getPriority(i)), (Item a) -> true, comparator(sort), offset, limit);
+		}
+		return query(database, predicate(filter), comparator(sort), offset, limit);
+	}
+
+	/**
+	 * Finds one page of the items of a database which pass a filter, in sorted order.
+	 *
+	 * The filter runs first and only the items which pass it are sorted. When there is a limit, only the
+	 * first offset + limit matches are kept, in a bounded heap, instead of sorting every match.
+	 * Items which sort equally stay in database order.
+	 *
+	 * @param database the database to search
+	 * @param filter the test items must pass
+	 * @param order the order to sort matches in
+	 * @param offset number of sorted matches to skip
+	 * @param limit largest number of matches to return, or NO_LIMIT
+	 * @return the page of matching items, sorted
+	 */
+	public static ArrayList<Database.PositionedItem> query(Database database, Predicate<Item> filter, Comparator<Item> order, int offset, int limit){
+		return query(database, (int i) -> true, filter, order, offset, limit);
+	}
+
+	/**
+	 * Finds one page of the items of a database which pass a filter, in sorted order, checking a test of their
+	 * positions before getting each item
+	 * @param database the database to search
+	 * @param positionFilter the test the positions of items must pass
+	 * @param filter the test items must pass
+	 * @param order the order to sort matches in
+	 * @param offset number of sorted matches to skip
+	 * @param limit largest number of matches to return, or NO_LIMIT
+	 * @return the page of matching items, sorted
+	 */
+	private static ArrayList<Database.PositionedItem> query(Database database, IntPredicate positionFilter, Predicate<Item> filter, Comparator<Item> order, int offset, int limit){
+		final Comparator<Database.PositionedItem> positionedOrder = (Database.PositionedItem o1, Database.PositionedItem o2) -> {
+			int result = order.compare(o1.getItem(), o2.getItem());
+			return (result != 0) ? result : Integer.compare(o1.getIndex(), o2.getIndex());
+		};
+		List<Item> items = database.getItems();
+		if(limit == NO_LIMIT){
+			ArrayList<Database.PositionedItem> out = new ArrayList<>();
+			for(int i = 0; i < items.size(); i++){
+				if(!positionFilter.test(i)){
+					continue;
+				}
+				Item a = items.get(i);
+				if(filter.test(a)){
+					out.add(new Database.PositionedItem(a, i));
+				}
+			}
+			out.sort(positionedOrder);
+			return (offset > 0) ? new ArrayList<>(out.subList(Math.min(offset, out.size()), out.size())) : out;
+		}
+
+		final int KEEP = (int)Math.min((long)offset + limit, items.size());//in long so a large page doesn't overflow, and no more than there can be matches
+		ArrayList<Database.PositionedItem> out = new ArrayList<>();
+		if(limit <= 0 || KEEP <= 0){
+			return out;
+		}
+		PriorityQueue<Database.PositionedItem> heap = new PriorityQueue<>(KEEP, positionedOrder.reversed());//the last kept match is on top
+		for(int i = 0; i < items.size(); i++){
+			if(!positionFilter.test(i)){
+				continue;
+			}
+			Item a = items.get(i);
+			if(!filter.test(a)){
+				continue;
+			}
+			if(heap.size() < KEEP){
+				heap.add(new Database.PositionedItem(a, i));
+			}
+			else if(order.compare(a, heap.peek().getItem()) < 0){//later items only displace earlier ones if they sort strictly before them
+				heap.poll();
+				heap.add(new Database.PositionedItem(a, i));
+			}
+		}
+		out.addAll(heap);
+		out.sort(positionedOrder);
+		return new ArrayList<>(out.subList(Math.min(offset, out.size()), out.size()));
+	}
+
+	/**
+	 * Gets the order items are sorted in by a SortMode
+	 * @param mode the SortMode
+	 * @return the order
+	 */
+	public static Comparator<Item> comparator(SortMode mode){
+		switch(mode){
+			case NAMEAZ:
+				return Comparator.comparing(Item::getNameKey);
+			case NAMEZA:
+				return Comparator.comparing(Item::getNameKey).reversed();
+			case PRIORITY:
+				return Comparator.comparingInt((Item a) -> a.getPriority().ordinal());//HIGH is declared first
+			case STATUS_PRIORITY:
+				return Comparator.comparingInt((Item a) -> statusPriorityBucket(a)).thenComparingLong(Item::getTime);
+			case DATE:
+				return Comparator.comparingLong(Item::getTime);
+			default:
+				Util.nyi(Util.getFileName(),Util.getLineNumber());
+				return null;//this line will never be reached
+		}
+	}
+
+	/**
+	 * Checks whether an item passes a FilterMode, without looking at any other items
+	 * @param mode the FilterMode
+	 * @param a the item to check
+	 * @return true if the item passes
+	 */
+	public static boolean matches(FilterMode mode, Item a){
+		return matches(mode, a.getStatus(), a.getPriority());
+	}
+
+	/**
+	 * Gets the test items must pass to be kept by a FilterMode
+	 * @param mode the FilterMode
+	 * @return the test
+	 */
+	public static Predicate<Item> predicate(FilterMode mode){
+		return (Item a) -> matches(mode, a);
+	}
+
+	/**
+	 * Checks whether an item with a status and priority passes a FilterMode
+	 * @param mode the FilterMode
+	 * @param status the item's status
+	 * @param priority the item's priority
+	 * @return true if the item passes
+	 */
+	static boolean matches(FilterMode mode, Item.Status status, Item.Priority priority){
+		switch(mode){
+			case NONE:
+				return true;
+			case HIGH_PRIORITY:
+				return priority == Item.Priority.HIGH;
+			case MEDIUM_PRIORITY:
+				return priority == Item.Priority.MEDIUM;
+			case LOW_PRIORITY:
+				return priority == Item.Priority.LOW;
+			case FINISHED:
+				return status == Item.Status.FINISHED;
+			case UNFINISHED:
+				return status == Item.Status.UNFINISHED;
+			default:
+				Util.nyi(Util.getFileName(),Util.getLineNumber());
+				return false;//this line will never be reached
+		}
+	}
+
 	/**
 	 * Filters a list of items
 	 * @param mode FilterMode to filter
@@ -146,15 +893,8 @@ public class Analytics {
 	 * @return number of unfinished items in the database
 	 */
 	public int numUnfinished(Database a){
-        ArrayList<Item> orig = a.getItems();
-        int tally=0;
-        for(int i=0;i<orig.size();i++){
-            if(orig.get(i).getStatus()== Item.Status.UNFINISHED){
-                tally++;
-            }
-        }
-        return tally;
-    }
+		return a.count(Item.Status.UNFINISHED);
+	}
 
 	/**
 	 * Filters the finished items
@@ -179,15 +919,8 @@ public class Analytics {
 	 * @return number of finished items
 	 */
 	public int numFinished(Database a){
-        ArrayList<Item> orig = a.getItems();
-        int tally=0;
-        for(int i = 0; i < orig.size(); i++){
-            if(orig.get(i).getStatus() == Item.Status.FINISHED){
-                tally++;
-            }
-        }
-        return tally;
-    }
+		return a.count(Item.Status.FINISHED);
+	}
 
 	/**
 	 * Sorts by date
@@ -195,9 +928,56 @@ public class Analytics {
 	 * @return sorted arraylist
 	 */
 	public static ArrayList<Database.PositionedItem> sortDate(ArrayList<Database.PositionedItem> in){
-        in.sort(Comparator.comparing(x -> x.getItem().getDate()));
-        return in;
-    }
+		long times[] = new long[in.size()];
+		for(int i = 0; i < times.length; i++){
+			times[i] = in.get(i).getItem().getTime();
+		}
+		int order[] = sortIndexes(times);
+		Database.PositionedItem sorted[] = new Database.PositionedItem[order.length];
+		for(int i = 0; i < order.length; i++){
+			sorted[i] = in.get(order[i]);
+		}
+		for(int i = 0; i < sorted.length; i++){
+			in.set(i, sorted[i]);
+		}
+		return in;
+	}
+
+	/**
+	 * Stable merge sort of the indexes of an array of keys, so sorting by a primitive key doesn't box it or go
+	 * through a Comparator. Runs which are already in order are merged by copying them.
+	 * @param keys the keys to sort by
+	 * @return the indexes of the keys, in ascending order of key
+	 */
+	private static int[] sortIndexes(long keys[]){
+		int n = keys.length;
+		int from[] = new int[n], to[] = new int[n];
+		for(int i = 0; i < n; i++){
+			from[i] = i;
+		}
+		for(int width = 1; width < n; width *= 2){
+			for(int start = 0; start < n; start += 2 * width){
+				int middle = Math.min(start + width, n), end = Math.min(start + 2 * width, n);
+				if(middle == end || keys[from[middle - 1]] <= keys[from[middle]]){//the halves are already in order
+					System.arraycopy(from, start, to, start, end - start);
+					continue;
+				}
+				int left = start, right = middle;
+				for(int out = start; out < end; out++){
+					if(right == end || (left < middle && keys[from[left]] <= keys[from[right]])){//ties take the left side first, keeping the sort stable
+						to[out] = from[left++];
+					}
+					else{
+						to[out] = from[right++];
+					}
+				}
+			}
+			int swap[] = from;
+			from = to;
+			to = swap;
+		}
+		return from;
+	}
 
 	/**
 	 * Sorts alphabetically
@@ -205,9 +985,7 @@ public class Analytics {
 	 * @return sorted arraylist
 	 */
 	public static ArrayList<Database.PositionedItem> sortNameAZ(ArrayList<Database.PositionedItem> in){
-		in.sort((Database.PositionedItem o1, Database.PositionedItem o2) ->
-				(new AlphanumComparator()).compare(o1.getItem().getDisplayName(),o2.getItem().getDisplayName())
-		);
+		in.sort(Comparator.comparing((Database.PositionedItem x) -> x.getItem().getNameKey()));
 		return in;
 	}
 
@@ -217,9 +995,16 @@ public class Analytics {
 	 * @return sorted arraylist
 	 */
 	public static ArrayList<Database.PositionedItem> sortNameZA(ArrayList<Database.PositionedItem> in){
-		in.sort((Database.PositionedItem o1, Database.PositionedItem o2) ->
-				(new AlphanumComparator()).reversed().compare(o1.getItem().getDisplayName(),o2.getItem().getDisplayName())
-		);
+		sortNameAZ(in);
+		Collections.reverse(in);
+		for(int start = 0; start < in.size();){//put items with equal names back in their original order
+			int end = start + 1;
+			while(end < in.size() && in.get(end).getItem().getNameKey().compareTo(in.get(start).getItem().getNameKey()) == 0){
+				end++;
+			}
+			Collections.reverse(in.subList(start, end));
+			start = end;
+		}
 		return in;
 	}
 
@@ -228,35 +1013,51 @@ public class Analytics {
 	 * @param orig arraylist to sort
 	 * @return sorted arraylist
 	 */
-    public static ArrayList<Database.PositionedItem> sortPriority(ArrayList<Database.PositionedItem> orig){
-        ArrayList<Database.PositionedItem> out = new ArrayList<>();
-        ArrayList<Database.PositionedItem> pA = new ArrayList<>();
-        ArrayList<Database.PositionedItem> pB = new ArrayList<>();
-        ArrayList<Database.PositionedItem> pC = new ArrayList<>();
+	public static ArrayList<Database.PositionedItem> sortPriority(ArrayList<Database.PositionedItem> orig){
+		return bucketSort(orig, Item.Priority.values().length, (Item a) -> a.getPriority().ordinal());
+	}
 
-        for(int i = 0; i < orig.size(); i++){
-            if(orig.get(i).getItem().getPriority()== Item.Priority.HIGH){
-                pA.add(orig.get(i));
-            }
-            else if(orig.get(i).getItem().getPriority()== Item.Priority.MEDIUM){
-                pB.add(orig.get(i));
-            }
-            else{
-                pC.add(orig.get(i));
-            }
-        }
+	/**
+	 * Sorts unfinished items before finished ones, and by priority within each. Since the sort is stable,
+	 * sorting a list which is already in date order keeps items of the same status and priority in date order.
+	 * @param orig arraylist to sort
+	 * @return sorted arraylist
+	 */
+	public static ArrayList<Database.PositionedItem> sortStatusPriority(ArrayList<Database.PositionedItem> orig){
+		return bucketSort(orig, Item.Status.values().length * Item.Priority.values().length, Analytics::statusPriorityBucket);
+	}
 
-        for(int i=0;i<pA.size();i++){
-            out.add(pA.get(i));
-        }
-        for(int i=0;i<pB.size();i++){
-            out.add(pB.get(i));
-        }
-        for(int i=0;i<pC.size();i++){
-            out.add(pC.get(i));
-        }
-        return out;
-    }
+	/**
+	 * Gets which status and priority group an item sorts into, unfinished and HIGH priority first
+	 * @param a the item
+	 * @return the group
+	 */
+	private static int statusPriorityBucket(Item a){
+		return a.getStatus().ordinal() * Item.Priority.values().length + a.getPriority().ordinal();
+	}
+
+	/**
+	 * Stable counting sort of items which fall into a small number of groups. The groups are counted in one pass,
+	 * and each item is then placed straight into its final position in a second pass.
+	 * @param orig arraylist to sort
+	 * @param buckets number of groups
+	 * @param bucket gets the group of an item, from 0 to buckets - 1
+	 * @return sorted arraylist
+	 */
+	private static ArrayList<Database.PositionedItem> bucketSort(ArrayList<Database.PositionedItem> orig, int buckets, ToIntFunction<Item> bucket){
+		int start[] = new int[buckets + 1];
+		for(Database.PositionedItem a: orig){
+			start[bucket.applyAsInt(a.getItem()) + 1]++;
+		}
+		for(int i = 1; i <= buckets; i++){
+			start[i] += start[i - 1];
+		}
+		Database.PositionedItem placed[] = new Database.PositionedItem[orig.size()];
+		for(Database.PositionedItem a: orig){
+			placed[start[bucket.applyAsInt(a.getItem())]++] = a;
+		}
+		return new ArrayList<>(Arrays.asList(placed));
+	}
 
 	/**
 	 * Filters by HIGH priority
@@ -312,7 +1113,7 @@ public class Analytics {
 	 * @return number of items
 	 */
 	public int itemCount(Database a){
-        return a.getItems().size();
-    }
+		return a.count();
+	}
 
 }
@@ -0,0 +1,398 @@
+package main.java.control;
+
+import main.java.util.AlphanumComparator;
+import main.java.util.Util;
+import java.lang.management.ManagementFactory;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the time and garbage taken by the database's hot paths.
+ *
+ * Run with the name of a benchmark and its size, ex: java main.java.control.Benchmark load 100000
+ * The journal benchmark clears the database, so it only runs where the database is empty or doesn't exist yet.
+ *
+ * @author Adrian Hardt
+ */
+
+public class Benchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+    private static final int JOURNAL_THREADS[] = {1, 4, 16};
+    //includes characters whose lowercase depends on the rest of the String or is longer when a whole String is lowercased
+    private static final String ALPHANUM_CHARACTERS = "aAbByYzZiI0123456789 -_.#\u00e9\u00c9\u0130\u0131\u0307\u03a3\u03c3\u03c2";
+
+    private static volatile int result;//results are stored here so the comparisons being timed aren't optimized away
+
+    private static final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    /**
+     * Builds lines in the database format to benchmark with
+     * @param count number of lines
+     * @return the lines, without newlines
+     */
+    private static String[] sampleLines(int count){
+        String lines[] = new String[count];
+        for(int i = 0; i < count; i++){
+            Item.Status status = (i % 3 == 0) ? Item.Status.FINISHED : Item.Status.UNFINISHED;
+            Item.Priority priority = Item.Priority.values()[i % Item.Priority.values().length];
+            lines[i] = "TestItem#" + (i + 1) + "|" + status + "|" + priority + "|Fri 06 09 2017 10:39:52 PM|This is a test #" + (i + 1);
+        }
+        return lines;
+    }
+
+    /**
+     * Gets the number of bytes allocated by this thread so far
+     * @return allocated bytes
+     */
+    private static long allocatedBytes(){
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Benchmarks parsing lines of the database into items
+     * @param count number of lines to parse per round
+     * @throws ParseException Failure
+     */
+    public static void load(int count) throws ParseException{
+        String lines[] = sampleLines(count);
+        Database database = new Database();
+        ArrayList<Item> out = new ArrayList<>(count);
+
+        long retained = 0;//approximate size of the fields each item keeps: a String header and array per text field
+        for(String line: lines){
+            Item a = database.parseLine(line);
+            retained += 2 * (24 + 16) + 2 * (a.getDisplayName().length() + a.getDescription().length());
+        }
+
+        for(int round = 0; round < WARMUP_ROUNDS; round++){
+            out.clear();
+            for(String line: lines){
+                out.add(database.parseLine(line));
+            }
+        }
+
+        long bestTime = Long.MAX_VALUE, bestBytes = Long.MAX_VALUE;
+        for(int round = 0; round < ROUNDS; round++){
+            out.clear();
+            long bytes = allocatedBytes();
+            long time = System.nanoTime();
+            for(String line: lines){
+                out.add(database.parseLine(line));
+            }
+            time = System.nanoTime() - time;
+            bytes = allocatedBytes() - bytes;
+            bestTime = Math.min(bestTime, time);
+            bestBytes = Math.min(bestBytes, bytes);
+        }
+        System.out.println("load: " + count + " lines");
+        System.out.println("  " + (bestTime / count) + " ns/line");
+        System.out.println("  " + (bestBytes / count) + " bytes allocated/line");
+        System.out.println("  " + (retained / count) + " bytes retained in text fields/line");
+    }
+
+    /**
+     * Gets the number of bytes used on the heap after collecting garbage
+     * @return used bytes
+     */
+    private static long usedHeap(){
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 3; i++){
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Benchmarks the heap taken by items kept as objects and kept in the columnar store
+     * @param count number of items to keep
+     * @throws ParseException Failure
+     */
+    public static void memory(int count) throws ParseException{
+        String lines[] = sampleLines(count);
+        Database database = new Database();
+        for(Database.StoreMode mode: Database.StoreMode.values()){
+            long before = usedHeap();
+            List<Item> items = (mode == Database.StoreMode.COLUMNAR) ? new ItemStore() : new ArrayList<>();
+            for(String line: lines){
+                items.add(database.parseLine(line));
+            }
+            long used = usedHeap() - before;
+            System.out.println("memory: " + count + " items, " + mode);
+            System.out.println("  " + (used / count) + " bytes/item");
+            if(items.isEmpty()){//keep the items reachable until they have been measured
+                System.out.println();
+            }
+        }
+    }
+
+    /**
+     * Benchmarks searching for words with the search index, against a linear scan of every item for the same words
+     * @param count number of items to search
+     * @throws ParseException Failure
+     */
+    public static void search(int count) throws ParseException{
+        String lines[] = sampleLines(count);
+        ArrayList<Item> items = new ArrayList<>(count);
+        Database parser = new Database();
+        for(String line: lines){
+            items.add(parser.parseLine(line));
+        }
+        Database database = new Database(items);
+        long time = System.nanoTime();
+        SearchIndex index = new SearchIndex(database);
+        time = System.nanoTime() - time;
+        System.out.println("search: " + count + " items");
+        System.out.println("  " + (time / 1000000) + " ms to build the index");
+
+        String queries[] = {"testitem " + (count / 2), "test " + (count / 3), "this test"};
+        for(String query: queries){
+            ArrayList<String> words = SearchIndex.words(query);
+            for(int round = 0; round < WARMUP_ROUNDS; round++){
+                index.search(query, Analytics.FilterMode.NONE, 0, 20);
+            }
+            long bestIndexed = Long.MAX_VALUE, bestScan = Long.MAX_VALUE;
+            int found = 0, scanned = 0;
+            for(int round = 0; round < ROUNDS; round++){
+                time = System.nanoTime();
+                found = index.count(query, Analytics.FilterMode.NONE);
+                index.search(query, Analytics.FilterMode.NONE, 0, 20);
+                bestIndexed = Math.min(bestIndexed, System.nanoTime() - time);
+
+                time = System.nanoTime();
+                scanned = 0;
+                for(Item a: database.getItems()){
+                    if(SearchIndex.words(a.getDisplayName() + " " + a.getDescription()).containsAll(words)){
+                        scanned++;
+                    }
+                }
+                bestScan = Math.min(bestScan, System.nanoTime() - time);
+            }
+            System.out.println("  \"" + query + "\": " + found + " matches (" + scanned + " by scanning)");
+            System.out.println("    " + (bestIndexed / 1000) + " us indexed, " + (bestScan / 1000) + " us scanning");
+        }
+    }
+
+    /**
+     * Benchmarks the throughput and latency of journaled changes in each sync mode, made by one thread and by several
+     * at once, and how many changes share each force to disk
+     * @param count number of changes per run, shared between the threads and rounded up to a multiple of their number
+     * @throws InterruptedException Failure
+     */
+    public static void journal(int count) throws InterruptedException{
+        if(Database.hasData()){
+            System.out.println("journal: the database isn't empty, and this benchmark would clear it. Run it from a directory without a data folder.");
+            return;
+        }
+        for(Database.SyncMode mode: Database.SyncMode.values()){
+            for(int threadCount: JOURNAL_THREADS){
+                Database.clearDoc();
+                Database database = new Database();
+                database.setJournaled(true);
+                database.setSyncMode(mode);
+                database.fillList();
+                long latencies[][] = new long[threadCount][];
+                Thread workers[] = new Thread[threadCount];
+                for(int t = 0; t < threadCount; t++){
+                    final int T = t;
+                    latencies[t] = new long[(count + threadCount - 1) / threadCount];//rounded up so every thread makes at least one change
+                    workers[t] = new Thread(() -> {
+                        long mine[] = latencies[T];
+                        for(int i = 0; i < mine.length; i++){
+                            long time = System.nanoTime();
+                            database.addItem(new Item("TestItem#" + i, "This is a test #" + T));
+                            mine[i] = System.nanoTime() - time;
+                        }
+                    });
+                }
+                long syncs = Database.getJournalSyncs();
+                long time = System.nanoTime();
+                for(Thread worker: workers){
+                    worker.start();
+                }
+                for(Thread worker: workers){
+                    worker.join();
+                }
+                time = System.nanoTime() - time;
+                database.flush();
+                syncs = Database.getJournalSyncs() - syncs;
+
+                long all[] = new long[0];
+                for(long mine[]: latencies){
+                    int at = all.length;
+                    all = Arrays.copyOf(all, at + mine.length);
+                    System.arraycopy(mine, 0, all, at, mine.length);
+                }
+                Arrays.sort(all);
+                System.out.println("journal: " + all.length + " changes, " + mode + ", " + threadCount + " thread(s)");
+                System.out.println("  " + (all.length * 1000000000L / Math.max(1, time)) + " changes/s");
+                System.out.println("  " + (all[all.length / 2] / 1000) + " us median, " + (all[all.length * 99 / 100] / 1000) + " us 99th percentile");
+                System.out.println("  " + syncs + " forces");
+            }
+        }
+        Database.clearDoc();
+    }
+
+    /**
+     * Compares two Strings the way AlphanumComparator did before it compared in place, copying out each chunk and
+     * lowercasing both Strings first, so the two can be checked against each other
+     * @param s1 one String
+     * @param s2 the other String
+     * @return negative, zero or positive as s1 sorts before, with or after s2
+     */
+    private static int legacyAlphanumCompare(String s1, String s2){
+        s1 = Util.stringToLowerCase(s1);
+        s2 = Util.stringToLowerCase(s2);
+        int thisMarker = 0, thatMarker = 0;
+        while(thisMarker < s1.length() && thatMarker < s2.length()){
+            String thisChunk = legacyChunk(s1, thisMarker);
+            thisMarker += thisChunk.length();
+            String thatChunk = legacyChunk(s2, thatMarker);
+            thatMarker += thatChunk.length();
+            int result;
+            if(isAsciiDigit(thisChunk.charAt(0)) && isAsciiDigit(thatChunk.charAt(0))){
+                result = thisChunk.length() - thatChunk.length();
+                for(int i = 0; result == 0 && i < thisChunk.length(); i++){
+                    result = thisChunk.charAt(i) - thatChunk.charAt(i);
+                }
+            }
+            else{
+                result = thisChunk.compareTo(thatChunk);
+            }
+            if(result != 0){
+                return result;
+            }
+        }
+        return s1.length() - s2.length();
+    }
+
+    /**
+     * Copies out the run of ASCII digits or of other characters starting at a position, as the old comparator did
+     * @param s the String
+     * @param marker start of the chunk
+     * @return the chunk
+     */
+    private static String legacyChunk(String s, int marker){
+        StringBuilder chunk = new StringBuilder();
+        boolean digit = isAsciiDigit(s.charAt(marker));
+        while(marker < s.length() && isAsciiDigit(s.charAt(marker)) == digit){
+            chunk.append(s.charAt(marker++));
+        }
+        return chunk.toString();
+    }
+
+    /**
+     * Checks whether a character is one of 0 to 9, which are the digits AlphanumComparator sorts by number
+     * @param c the character
+     * @return true if it is
+     */
+    private static boolean isAsciiDigit(char c){
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Builds a random name with runs of digits, including leading zeros, mixed with letters of both cases
+     * @param random the source of randomness
+     * @return the name
+     */
+    private static String randomName(Random random){
+        char name[] = new char[random.nextInt(12)];
+        for(int i = 0; i < name.length; i++){
+            name[i] = ALPHANUM_CHARACTERS.charAt(random.nextInt(ALPHANUM_CHARACTERS.length()));
+        }
+        return new String(name);
+    }
+
+    /**
+     * Checks AlphanumComparator and its collation keys against the old comparator over random pairs of names, and
+     * benchmarks the time and garbage of each comparison
+     * @param count number of pairs to compare
+     */
+    public static void alphanum(int count){
+        Random random = new Random(count);
+        String first[] = new String[count], second[] = new String[count];
+        for(int i = 0; i < count; i++){
+            first[i] = randomName(random);
+            second[i] = (i % 4 == 0) ? first[i].toUpperCase() : randomName(random);//equal apart from case, now and then
+        }
+
+        AlphanumComparator comparator = new AlphanumComparator();
+        int mismatches = 0, keyMismatches = 0;
+        for(int i = 0; i < count; i++){
+            int expected = Integer.signum(legacyAlphanumCompare(first[i], second[i]));
+            if(Integer.signum(comparator.compare(first[i], second[i])) != expected){
+                if(mismatches++ < 10){
+                    System.out.println("  compare differs: \"" + first[i] + "\" \"" + second[i] + "\"");
+                }
+            }
+            if(Integer.signum(new AlphanumComparator.Key(first[i]).compareTo(new AlphanumComparator.Key(second[i]))) != expected){
+                if(keyMismatches++ < 10){
+                    System.out.println("  Key differs: \"" + first[i] + "\" \"" + second[i] + "\"");
+                }
+            }
+        }
+
+        long bestTime = Long.MAX_VALUE, bestBytes = Long.MAX_VALUE, bestLegacyTime = Long.MAX_VALUE, bestLegacyBytes = Long.MAX_VALUE;
+        int sink = 0;
+        for(int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++){
+            long bytes = allocatedBytes();
+            long time = System.nanoTime();
+            for(int i = 0; i < count; i++){
+                sink += comparator.compare(first[i], second[i]);
+            }
+            time = System.nanoTime() - time;
+            bytes = allocatedBytes() - bytes;
+
+            long legacyBytes = allocatedBytes();
+            long legacyTime = System.nanoTime();
+            for(int i = 0; i < count; i++){
+                sink += legacyAlphanumCompare(first[i], second[i]);
+            }
+            legacyTime = System.nanoTime() - legacyTime;
+            legacyBytes = allocatedBytes() - legacyBytes;
+            if(round >= WARMUP_ROUNDS){
+                bestTime = Math.min(bestTime, time);
+                bestBytes = Math.min(bestBytes, bytes);
+                bestLegacyTime = Math.min(bestLegacyTime, legacyTime);
+                bestLegacyBytes = Math.min(bestLegacyBytes, legacyBytes);
+            }
+        }
+        result = sink;
+        System.out.println("alphanum: " + count + " random pairs");
+        System.out.println("  " + mismatches + " compare and " + keyMismatches + " Key results differ from the old comparator");
+        System.out.println("  " + (bestTime / count) + " ns/compare, " + (bestBytes / count) + " bytes allocated/compare");
+        System.out.println("  old comparator: " + (bestLegacyTime / count) + " ns/compare, " + (bestLegacyBytes / count) + " bytes allocated/compare");
+    }
+
+    /**
+     * Runs a benchmark
+     * @param args the name of the benchmark followed by its size
+     * @throws Exception Failure
+     */
+    public static void main(String[] args) throws Exception{
+        String name = args.length > 0 ? args[0] : "load";
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        switch (name) {
+            case "load":
+                load(size);
+                break;
+            case "memory":
+                memory(size);
+                break;
+            case "search":
+                search(size);
+                break;
+            case "journal":
+                journal(size);
+                break;
+            case "alphanum":
+                alphanum(size);
+                break;
+            default:
+                System.out.println("Unknown benchmark: " + name);
+        }
+    }
+}
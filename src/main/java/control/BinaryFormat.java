@@ -0,0 +1,172 @@
+package main.java.control;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Compact binary encoding of the database.
+ *
+ * The file starts with a header of a magic number and a version. Each item follows as a record of
+ * one byte holding the status and priority, the item's ID, the date in milliseconds since the epoch,
+ * and then the name and description as UTF-8 bytes, each prefixed with its length.
+ *
+ * @author Adrian Hardt
+ */
+
+class BinaryFormat {
+    public static final int MAGIC = 0x54455354;//"TEST", short for Tempest
+    public static final int VERSION = 2;//version 2 added item IDs
+    public static final int HEADER_SIZE = 8;
+
+    private static final int PRIORITY_BITS = 2;
+    private static final int PRIORITY_MASK = (1 << PRIORITY_BITS) - 1;
+    private static final int SCAN_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Encodes the header which begins every binary database
+     * @return the header bytes
+     */
+    public static byte[] header(){
+        return ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).array();
+    }
+
+    /**
+     * Encodes an item as a record
+     * @param toWrite Item to encode
+     * @return the record bytes
+     */
+    public static byte[] encode(Item toWrite){
+        byte name[] = toWrite.getDisplayName().getBytes(StandardCharsets.UTF_8);
+        byte desc[] = toWrite.getDescription().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer out = ByteBuffer.allocate(1 + 8 + 8 + 4 + name.length + 4 + desc.length);
+        out.put((byte)(toWrite.getStatus().ordinal() << PRIORITY_BITS | toWrite.getPriority().ordinal()));
+        out.putLong(toWrite.getId());
+        out.putLong(toWrite.getTime());
+        out.putInt(name.length).put(name);
+        out.putInt(desc.length).put(desc);
+        return out.array();
+    }
+
+    /**
+     * Decodes a whole binary database
+     * @param in the bytes of the database, from its header to its end
+     * @param out list to add the items to, in order
+     * @throws IOException if the header is wrong or a record is cut off
+     */
+    public static void decode(ByteBuffer in, List<Item> out) throws IOException{
+        try {
+            if(in.getInt() != MAGIC){
+                throw new IOException("Not a binary database");
+            }
+            int version = in.getInt();
+            if(version > VERSION){
+                throw new IOException("Unsupported binary database version " + version);
+            }
+            Item.Status statuses[] = Item.Status.values();
+            Item.Priority priorities[] = Item.Priority.values();
+            while(in.hasRemaining()){
+                int flags = in.get();
+                long id = (version >= 2) ? in.getLong() : 0;
+                long date = in.getLong();
+                String name = readString(in);
+                String desc = readString(in);
+                Item a = new Item(name, desc, statuses[flags >> PRIORITY_BITS & 1], priorities[flags & PRIORITY_MASK], date);
+                a.setId(id);
+                out.add(a);
+            }
+        }
+        catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException a){
+            throw new IOException("Binary database is cut off or corrupt after " + out.size() + " items", a);
+        }
+    }
+
+    /**
+     * A window of a file read ahead, so walking the records reads the file in large pieces
+     */
+    private static class Window{
+        private final FileChannel channel;
+        private final long size;
+        private final ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        private long start = 0;
+
+        private Window(FileChannel channel, long size){
+            this.channel = channel;
+            this.size = size;
+            this.buffer.limit(0);
+        }
+
+        /**
+         * Reads an int, moving the window there if it isn't in it already
+         * @param offset position of the int in the file
+         * @return the int
+         * @throws IOException Failure
+         */
+        private int intAt(long offset) throws IOException{
+            if(offset < start || offset + 4 > start + buffer.limit()){
+                buffer.clear();
+                buffer.limit((int)Math.min(buffer.capacity(), size - offset));
+                while(buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0){
+                }
+                buffer.flip();
+                start = offset;
+            }
+            return buffer.getInt((int)(offset - start));
+        }
+    }
+
+    /**
+     * Finds the end of the last whole record of a binary database, to find a record cut off by a crash. Only the
+     * lengths are read, a window at a time, so the database isn't loaded to find its end.
+     * @param channel the database
+     * @return length of the header and every whole record, or -1 if it isn't a binary database this version can read
+     * @throws IOException Failure
+     */
+    public static long completeLength(FileChannel channel) throws IOException{
+        long size = channel.size();
+        if(size < HEADER_SIZE){
+            return -1;
+        }
+        Window in = new Window(channel, size);
+        if(in.intAt(0) != MAGIC){
+            return -1;
+        }
+        int version = in.intAt(4);
+        if(version > VERSION){
+            return -1;
+        }
+        final int FIXED = 1 + ((version >= 2) ? 8 : 0) + 8;//flags, ID and date
+        long complete = HEADER_SIZE;
+        while(size - complete >= FIXED + 4){
+            long position = complete + FIXED;
+            int nameLength = in.intAt(position);
+            position += 4;
+            if(nameLength < 0 || size - position < (long)nameLength + 4){
+                break;
+            }
+            position += nameLength;
+            int descLength = in.intAt(position);
+            position += 4;
+            if(descLength < 0 || size - position < descLength){
+                break;
+            }
+            complete = position + descLength;
+        }
+        return complete;
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string
+     * @param in buffer positioned at the length
+     * @return the string
+     */
+    private static String readString(ByteBuffer in){
+        int length = in.getInt();
+        String out = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return out;
+    }
+}
@@ -1,12 +1,34 @@
 package main.java.control;
 
+import main.java.util.Util;
 import static java.nio.file.StandardOpenOption.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.io.*;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Class to read and write the database.
@@ -20,10 +42,250 @@ public class Database {
 
     private static final String FILE_NAME = RELEASE_DATABASE_FILE_NAME;//set this to either dev or release
 
+    private static final String DEV_JOURNAL_FILE_NAME = "./src/main/data/database.journal";
+    private static final String RELEASE_JOURNAL_FILE_NAME = "./data/database.journal";
+
+    private static final String JOURNAL_FILE_NAME = RELEASE_JOURNAL_FILE_NAME;//keep this matched with FILE_NAME
+
+    private static final String DEV_BINARY_FILE_NAME = "./src/main/data/database.bin";
+    private static final String RELEASE_BINARY_FILE_NAME = "./data/database.bin";
+
+    private static final String BINARY_FILE_NAME = RELEASE_BINARY_FILE_NAME;//keep this matched with FILE_NAME
+
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;//bytes buffered before each write to the channel
+
+    private static final int COMPACTION_THRESHOLD = 512;//number of journal records before the database is rewritten in full
+    public static final long DEFAULT_SYNC_INTERVAL = 50;//ms
+
+    private static final long PARALLEL_LOAD_THRESHOLD = 1 << 20;//bytes; smaller files are always read sequentially
+    private static final int MIN_CHUNK_SIZE = 1 << 18;//bytes parsed by each worker at the least
+    private static final int MAP_WINDOW_SIZE = 1 << 26;//bytes of the database file mapped at a time
+
     private static boolean fileExists = false;
 
-    private ArrayList<Item> items;
-    private static final SimpleDateFormat formatter = new SimpleDateFormat("E MM dd y hh:mm:ss a");
+    private static final Object fileLock = new Object();
+    private static final AtomicInteger tempFileCount = new AtomicInteger();
+    private static final Journal journal = new Journal(JOURNAL_FILE_NAME);
+    private static final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Database loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Database writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ScheduledExecutorService syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Database syncer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final AtomicBoolean syncQueued = new AtomicBoolean();
+
+    /**
+     * How the database file is read by fillList
+     */
+    public enum LoadMode{
+        SEQUENTIAL,PARALLEL,MAPPED
+    }
+
+    /**
+     * Which file format the database is stored in. The journal is the same for both.
+     */
+    public enum StorageFormat{
+        TEXT,BINARY
+    }
+
+    /**
+     * When journal records are forced to disk: before each change is reported as saved, at most a set interval after
+     * it, or whenever the operating system writes them out. Each is faster and loses more changes in a crash than the
+     * one before it.
+     */
+    public enum SyncMode{
+        ALWAYS,INTERVAL,OS
+    }
+
+    /**
+     * How the items are kept in memory: one Item object each, or packed into the columns of an ItemStore
+     */
+    public enum StoreMode{
+        OBJECTS,COLUMNAR
+    }
+
+    /**
+     * Receives the changes made to a database's items, after they are made
+     */
+    public interface Listener{
+        /**
+         * Called when an item is added to the end of the list
+         * @param item the new item
+         */
+        void itemAdded(Item item);
+
+        /**
+         * Called when a batch of items is added to the end of the list at once, such as by a lazy load
+         * @param added the new items, in order
+         */
+        default void itemsAdded(List<Item> added){
+            for(Item a: added){
+                itemAdded(a);
+            }
+        }
+
+        /**
+         * Called when an item is edited, either in place or by replacing it with an item with the same ID
+         * @param item the item as it is now
+         */
+        void itemEdited(Item item);
+
+        /**
+         * Called when an item is deleted
+         * @param item the deleted item
+         */
+        void itemDeleted(Item item);
+
+        /**
+         * Called when the whole list is replaced, such as when it is read from the file again
+         */
+        void itemsReloaded();
+    }
+
+    /**
+     * Receives the failures of writes made on the background writer
+     */
+    public interface WriteFailureHandler{
+        /**
+         * Called on the background writer when changes couldn't be saved
+         * @param failure what went wrong
+         */
+        void writeFailed(IOException failure);
+    }
+
+    /**
+     * Receives the progress of a lazy load, on the executor the load publishes its batches with
+     */
+    public interface LoadListener{
+        /**
+         * Called after a batch of items has been added to the list
+         * @param fraction how much of the database file has been read, from 0 to 1
+         */
+        void batchLoaded(double fraction);
+
+        /**
+         * Called once every item has been loaded and the database can be changed again
+         */
+        void loadFinished();
+    }
+
+    /**
+     * The journal folded into the change it makes to each item, so it can be applied to items as they are read
+     * instead of after the whole database file has been read
+     */
+    private static class Replay{
+        private final HashMap<Long,Item> edits = new HashMap<>();
+        private final HashSet<Long> deletes = new HashSet<>();
+        private final LinkedHashMap<Long,Item> adds = new LinkedHashMap<>();//items added by the journal, in order
+
+        /**
+         * Folds the next journal record into the changes
+         * @param record the record
+         * @param parser database to parse item lines with
+         * @return false if the record can't be folded because it doesn't give the ID of the item it adds
+         * @throws ParseException if the record is malformed
+         */
+        private boolean fold(String record, Database parser) throws ParseException{
+            if(record.length() < 2 || record.charAt(1) != '|'){
+                throw new ParseException("Malformed journal record: " + record, 0);
+            }
+            try {
+                switch (record.charAt(0)) {
+                    case Journal.ADD: {
+                        Item added = parser.parseLine(record.substring(2));
+                        if(added.getId() == ItemIndex.NO_ID){
+                            return false;
+                        }
+                        adds.put(added.getId(), added);
+                        return true;
+                    }
+                    case Journal.EDIT: {
+                        int bar = record.indexOf('|', 2);
+                        long id = Long.parseLong(record.substring(2, bar));
+                        Item edited = parser.parseLine(record.substring(bar + 1));
+                        edited.setId(id);
+                        if(adds.containsKey(id)){
+                            adds.put(id, edited);
+                        }
+                        else{
+                            edits.put(id, edited);
+                        }
+                        return true;
+                    }
+                    case Journal.DELETE: {
+                        long id = Long.parseLong(record.substring(2));
+                        adds.remove(id);
+                        edits.remove(id);
+                        deletes.add(id);//the file may have the item too, if the journal wasn't cleared after it was written
+                        return true;
+                    }
+                    default:
+                        throw new ParseException("Unknown journal record: " + record, 0);
+                }
+            }
+            catch (NumberFormatException | IndexOutOfBoundsException a){
+                throw new ParseException("Invalid journal record: " + record, 0);
+            }
+        }
+
+        /**
+         * Applies the changes to an item read from the database file
+         * @param read the item as it was read
+         * @return the item as the journal left it, or null if the journal deleted it
+         */
+        private Item apply(Item read){
+            long id = read.getId();
+            if(deletes.remove(id)){
+                return null;
+            }
+            Item added = adds.remove(id);//the file has the item already if the journal wasn't cleared after it was written
+            if(added != null){
+                return added;
+            }
+            Item edited = edits.remove(id);
+            return (edited != null) ? edited : read;
+        }
+    }
+
+    /**
+     * Items and parse failures from one chunk of the database file
+     */
+    private static class Chunk{
+        private final ArrayList<Item> items = new ArrayList<>();
+        private final ArrayList<ParseException> failures = new ArrayList<>();
+    }
+
+    private List<Item> items;
+    private StoreMode storeMode;
+    private boolean journaled;
+    private boolean compactionQueued;
+    private boolean idsGivenOut;//an item read without an ID was given one, which isn't saved until the file is rewritten
+    private boolean asynchronous;
+    private boolean flushQueued;
+    private boolean rewritePending;//the whole list has to be written out on the next flush
+    private ArrayList<String> pendingRecords;//journal records waiting for the next flush
+    private WriteFailureHandler writeFailureHandler;
+    private volatile boolean loading;//true while a lazy load is still adding items
+    private int loadGeneration;//counts loads, so a lazy load stops once another load has started
+    private LoadMode loadMode;
+    private StorageFormat storageFormat;
+    private SyncMode syncMode;
+    private long syncInterval;
+    private final ItemIndex index;
+    private long nextId;
+    private final ArrayList<Listener> listeners;
+    private final int counts[];//number of items in each status and priority cell
+    private static final DateCodec dateCodec = new DateCodec();
 
     public static class PositionedItem{
         private Item item;
@@ -45,6 +307,14 @@ public class Database {
             return this.index;
         }
 
+        /**
+         * Gets the ID of the positioneditem, which unlike its index doesn't change when other items are deleted
+         * @return ID of the item
+         */
+        public long getId(){
+            return this.item.getId();
+        }
+
         /**
          * Constructs Positioned item based on a database and an index
          * @param database Database where the item is
@@ -71,7 +341,7 @@ public class Database {
      * @param in input ArrayList<Item>
      * @return ArrayList<PositionedItem>
      */
-    public static ArrayList<PositionedItem> toPositionedArray(ArrayList<Item> in){
+    public static ArrayList<PositionedItem> toPositionedArray(List<Item> in){
         ArrayList<PositionedItem> out = new ArrayList<>();
         for(int i = 0; i < in.size(); i++){
             out.add(i,new PositionedItem(in.get(i),i));
@@ -94,9 +364,9 @@ public class Database {
 
     /**
      * Getter for Items list
-     * @return ArrayList<Item> List of items
+     * @return List<Item> List of items
      */
-    public ArrayList<Item> getItems(){
+    public List<Item> getItems(){
         return items;
     }
 
@@ -127,245 +397,1755 @@ public class Database {
     }
 
     /**
-     * Sets items as an input arraylist
-     * @param items arraylist to set
+     * Gets the position of an item in the list
+     * @param id ID of the item
+     * @return index of the item, or -1 if there is no item with that ID
      */
-    public void setItems(ArrayList<Item> items){
-        this.items=items;
+    public int indexOf(long id){
+        return index.get(id);
     }
 
     /**
-     * Writes the local ArrayList<Item> to the database
+     * Getter of an item based on its ID
+     * @param id ID of the item
+     * @return the item, or null if there is no item with that ID
      */
-    public void writeList(){
-        for(Item a: items){
-            writeItem(a);
-        }
+    public Item getItemById(long id){
+        int i = index.get(id);
+        return (i == ItemIndex.NOT_FOUND) ? null : items.get(i);
     }
 
     /**
-     * Converts local Items into a string
-     * @return String of Items
+     * Gets positioned item based on an ID
+     * @param id ID of the item
+     * @return the positioneditem, or null if there is no item with that ID
      */
-    @Override
-    public String toString(){
-        return "Database(" + this.items.toString() + ")";
+    public PositionedItem getPositionedItemById(long id){
+        int i = index.get(id);
+        return (i == ItemIndex.NOT_FOUND) ? null : new PositionedItem(items.get(i),i);
     }
 
     /**
-     * Clears all data from the database
+     * Sets items as an input list, copying them into an ItemStore if the columnar store is in use
+     * @param items list to set
      */
-    public static void clearDoc(){
-        if(!fileExists){
-            createDatabaseFile();
-        }
-        try{
-            PrintWriter writer = new PrintWriter(FILE_NAME);
-            writer.print("");
-            writer.close();
-        }
-        catch (IOException x) {
-            x.printStackTrace(new PrintStream(System.out));
+    public synchronized void setItems(List<Item> items){
+        this.items=(storeMode == StoreMode.COLUMNAR) ? store(items) : items;
+        reindex();
+        for(Listener listener: listeners){
+            listener.itemsReloaded();
         }
     }
 
     /**
-     * Creates the database file if it doesn't already exist
+     * Registers a listener to be told about changes to the items
+     * @param listener the listener
      */
-    private static void createDatabaseFile(){
-        if(!fileExists) {
-            File source = new File(FILE_NAME);
-            while(!source.exists()) {
-                {
-                    boolean success = source.getParentFile().mkdirs();
-                    if (!success) {
-                        continue;
-                    }
-                }
-				try{
-                    source.createNewFile();
-				} catch (IOException x){
-					x.printStackTrace(new PrintStream(System.out));
-				}
-			}
-            fileExists = true;
-        }
+    public synchronized void addListener(Listener listener){
+        listeners.add(listener);
     }
 
     /**
-     * Adds an item to the database
-     * @param toWrite Item to write
+     * Stops telling a listener about changes to the items
+     * @param listener the listener
      */
-    public void writeItem(Item toWrite){
-        if(!fileExists){
-            createDatabaseFile();
+    public synchronized void removeListener(Listener listener){
+        listeners.remove(listener);
+    }
+
+    /**
+     * Gives IDs to any items without one and rebuilds the index over the whole list.
+     * Items without IDs are numbered in list order after the largest existing ID, so the same
+     * file always produces the same IDs.
+     */
+    private void reindex(){
+        for(Item a: items){
+            nextId = Math.max(nextId, a.getId() + 1);
         }
-        String name = toWrite.getDisplayName();
-        String desc = toWrite.getDescription();
-        Item.Status status = toWrite.getStatus();
-        Item.Priority priority = toWrite.getPriority();
-        Date date = toWrite.getDate();
+        index.clear();
+        Arrays.fill(counts, 0);
+        for(int i = 0; i < items.size(); i++){
+            Item a = items.get(i);
+            if(a.getId() == ItemIndex.NO_ID){
+                a.setId(nextId++);
+                items.set(i, a);//an ItemStore only holds a copy of the item
+                idsGivenOut = true;
+            }
+            index.put(a.getId(), i);
+            counts[cell(a)]++;
+        }
+    }
+
+    /**
+     * Gets which status and priority cell of the counters an item falls into
+     * @param a the item
+     * @return the cell
+     */
+    private static int cell(Item a){
+        return cell(a.getStatus(), a.getPriority());
+    }
 
-        String dateString = formatter.format(date);
+    /**
+     * Gets the cell of the counters for a status and priority
+     * @param status the status
+     * @param priority the priority
+     * @return the cell
+     */
+    private static int cell(Item.Status status, Item.Priority priority){
+        return status.ordinal() * Item.Priority.values().length + priority.ordinal();
+    }
 
-        String write = name+"|"+status+"|"+priority+"|"+dateString+"|"+desc+"\n";
+    /**
+     * Updates the index after items have moved
+     * @param from index of the first item which moved
+     */
+    private void reindexFrom(int from){
+        for(int i = from; i < items.size(); i++){
+            index.put(items.get(i).getId(), i);
+        }
+    }
 
-        byte data[] = write.getBytes(); //String -> Bytes
-        Path p = Paths.get(FILE_NAME);
+    /**
+     * Adds an item to the end of the list, giving it an ID if it doesn't have one
+     * @param toAdd the item
+     */
+    private void insert(Item toAdd){
+        if(toAdd.getId() == ItemIndex.NO_ID){
+            toAdd.setId(nextId++);
+            idsGivenOut = true;
+        }
+        else{
+            nextId = Math.max(nextId, toAdd.getId() + 1);
+        }
+        items.add(toAdd);
+        index.put(toAdd.getId(), items.size() - 1);
+        counts[cell(toAdd)]++;
+    }
 
-        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(p, CREATE, APPEND))) {
-            out.write(data, 0, data.length);
-            out.close();
+    /**
+     * Replaces an item in the list, carrying its ID over to the replacement if it doesn't have one
+     * @param i index of the item
+     * @param in the replacement
+     */
+    private void replace(int i, Item in){
+        Item old = items.get(i);
+        if(in.getId() == ItemIndex.NO_ID){
+            in.setId(old.getId());
         }
-        catch (IOException x) {
-            x.printStackTrace(new PrintStream(System.out));
+        if(in.getId() != old.getId()){
+            index.remove(old.getId());
+            nextId = Math.max(nextId, in.getId() + 1);
+        }
+        items.set(i, in);
+        index.put(in.getId(), i);
+        if(in == old){//changed in place, so the cell it was counted in is unknown
+            recount();
+        }
+        else{
+            counts[cell(old)]--;
+            counts[cell(in)]++;
         }
     }
 
     /**
-     * Parses a date from a string
-     * @param in String to parse
-     * @return Date parsed
-     * @throws ParseException Failure
+     * Counts every item again
      */
-    public Date parseDate(String in) throws ParseException{//TODO: handle exception here?
-        return formatter.parse(in);
+    private void recount(){
+        Arrays.fill(counts, 0);
+        for(Item a: items){
+            counts[cell(a)]++;
+        }
     }
 
     /**
-     * Parses a whole line from the database
-     * @param input String of the whole line
-     * @return An item parsed from the line
-     * @throws ParseException Failure
+     * Removes an item from the list
+     * @param i index of the item
      */
-    public Item parseLine(String input) throws ParseException{
-        int length=input.length();
+    private void removeAt(int i){
+        Item removed = items.remove(i);
+        index.remove(removed.getId());
+        counts[cell(removed)]--;
+        reindexFrom(i);
+    }
 
-        String name="";
-        int bar1=0;
-        for(int i=0;i<length;i++){
-            if(input.substring(i,i+1).equals("|")){
-                bar1=i;
-                break;
-            }
-        }
-        name=input.substring(0,bar1);
+    /**
+     * Gets the number of items
+     * @return number of items
+     */
+    public synchronized int count(){
+        return items.size();
+    }
 
-        int bar2=0;
-        for(int i=bar1+1;i<length;i++) {
-            if (input.substring(i, i + 1).equals("|")) {//A
-                bar2 = i;
-                break;
-            }
-        }
-        Item.Status status= Item.Status.UNFINISHED;
-        {
-            String temp = input.substring(bar1+1, bar2);
-            if (Item.Status.parseable(temp)) {//B
-                status = Item.Status.parse(temp);
-            }
+    /**
+     * Gets the number of items with a status
+     * @param status the status
+     * @return number of items
+     */
+    public synchronized int count(Item.Status status){
+        int out = 0;
+        for(Item.Priority priority: Item.Priority.values()){
+            out += counts[cell(status, priority)];
         }
+        return out;
+    }
 
-        int bar3=0;
-        for(int i=bar2+1;i<length;i++) {
-            if (input.substring(i, i + 1).equals("|")) {//A
-                bar3 = i;
-                break;
-            }
-        }
-        Item.Priority priority= Item.Priority.LOW;
-        {
-            String temp = input.substring(bar2+1, bar3);
-            if (Item.Priority.parseable(temp)) {//B
-                priority = Item.Priority.parse(temp);
-            }
+    /**
+     * Gets the number of items with a priority
+     * @param priority the priority
+     * @return number of items
+     */
+    public synchronized int count(Item.Priority priority){
+        int out = 0;
+        for(Item.Status status: Item.Status.values()){
+            out += counts[cell(status, priority)];
         }
+        return out;
+    }
+
+    /**
+     * Gets the number of items with both a status and a priority
+     * @param status the status
+     * @param priority the priority
+     * @return number of items
+     */
+    public synchronized int count(Item.Status status, Item.Priority priority){
+        return counts[cell(status, priority)];
+    }
 
-        int bar4=0;
-        for(int i=bar3+1;i<length;i++) {
-            if (input.substring(i, i + 1).equals("|")) {//A
-                bar4 = i;
-                break;
+    /**
+     * Writes the local ArrayList<Item> to the database
+     */
+    public synchronized void writeList(){
+        checkLoaded();
+        if(asynchronous){
+            rewrite();
+            return;
+        }
+        if(writeItems(items)){
+            synchronized (fileLock) {
+                journal.clear();
             }
         }
-        String temp = input.substring(bar3+1, bar4);
-        Date date = parseDate(temp);
+    }
 
-        String desc = input.substring(bar4+1,length);
-        return new Item(name,desc,status,priority,date);
+    /**
+     * Replaces the contents of the database with a batch of items in one write session.
+     * The batch is written to a temporary file, forced to disk, and then renamed over the database, so
+     * the database is never left partially written, even by a crash.
+     * @param toWrite Items to write, in order
+     * @return true if the database was replaced
+     */
+    public boolean writeItems(List<Item> toWrite){
+        return writeItems(toWrite, storageFormat);
     }
 
     /**
-     * Fills Items with data from the database
+     * Replaces the contents of the database file of the given format with a batch of items in one write session
+     * @param toWrite Items to write, in order
+     * @param format format of the file to replace
+     * @return true if the database was replaced
      */
-    public void fillList(){
+    private static boolean writeItems(List<Item> toWrite, StorageFormat format){
         if(!fileExists){
             createDatabaseFile();
         }
-        items.clear();
+        Path p = Paths.get(fileName(format));
+        Path temp = null;
         try {
-            BufferedReader reader = new BufferedReader(new FileReader(FILE_NAME));
-            String line = reader.readLine();
-
-            while (line != null){
-                try {
-                    items.add(parseLine(line));
-                }
-                catch (ParseException a){
-                    a.printStackTrace(System.out);
+            temp = p.resolveSibling(p.getFileName() + "." + tempFileCount.incrementAndGet() + SafeFiles.TEMPORARY_SUFFIX);
+            try (FileChannel out = FileChannel.open(temp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+                if(format == StorageFormat.BINARY){
+                    buffer.put(BinaryFormat.header());
                 }
-                finally {
-                    line = reader.readLine();
+                for(Item a: toWrite){
+                    byte data[] = encode(a, format);
+                    if(data.length > buffer.remaining()){
+                        drain(out, buffer);
+                    }
+                    if(data.length > buffer.capacity()){
+                        drain(out, ByteBuffer.wrap(data));
+                    }
+                    else{
+                        buffer.put(data);
+                    }
                 }
+                drain(out, buffer);
+                out.force(true);//the contents have to be on disk before the rename, or a crash could leave the renamed file empty
             }
-            reader.close();
+            synchronized (fileLock) {
+                SafeFiles.replace(temp, p);
+            }
+            return true;
         }
-        catch (IOException x){
+        catch (IOException x) {
             x.printStackTrace(new PrintStream(System.out));
+            if(temp != null){
+                try {
+                    Files.deleteIfExists(temp);
+                }
+                catch (IOException y){
+                    y.printStackTrace(new PrintStream(System.out));
+                }
+            }
+            return false;
         }
     }
 
     /**
-     * Replaces the database with test items
+     * Gets the path of the database file in a format
+     * @param format the format
+     * @return path of the file
      */
-    public static void convertDataToTest(){
-        clearDoc();
-        final int LENGTH = 30;
-        Database a = new Database();
-        for(int i = 0; i < LENGTH; i++){
-            Item z = new Item("TestItem#" + (i + 1), "This is a test #" + (i + 1));
-            a.writeItem(z);
+    private static String fileName(StorageFormat format){
+        return (format == StorageFormat.BINARY) ? BINARY_FILE_NAME : FILE_NAME;
+    }
+
+    /**
+     * Encodes an item as it is stored in a format
+     * @param toWrite Item to encode
+     * @param format the format
+     * @return the bytes of the line or record, including the newline of a line
+     */
+    private static byte[] encode(Item toWrite, StorageFormat format){
+        if(format == StorageFormat.BINARY){
+            return BinaryFormat.encode(toWrite);
         }
+        return (formatLine(toWrite) + "\n").getBytes(CHARSET);
     }
 
     /**
-     * Edits items based on their index and the item to replace it with
-     * @param index index of the item
-     * @param in edited item
+     * Converts the text database into the binary format, replacing any binary database already there
+     * @return true if the binary database was written
      */
-    public void editItem(int index, Item in){
-        clearDoc();
-        items.remove(index);
-        items.add(index,in);
-        writeList();
+    public static boolean convertTextToBinary(){
+        if(!fileExists){
+            createDatabaseFile();
+        }
+        List<Item> converted;
+        synchronized (fileLock) {
+            converted = new Database().readTextFile();
+        }
+        return writeItems(converted, StorageFormat.BINARY);
     }
 
     /**
-     * Edits an item in the database
-     * @param item Replacement PositionedItem
+     * Writes out everything in a buffer and empties it
+     * @param out channel to write to
+     * @param buffer buffer to drain, in write mode
+     * @throws IOException Failure
      */
-    public void editItem(PositionedItem item){
-        editItem(item.getIndex(),item.getItem());
+    private static void drain(FileChannel out, ByteBuffer buffer) throws IOException{
+        buffer.flip();
+        while(buffer.hasRemaining()){
+            out.write(buffer);
+        }
+        buffer.clear();
     }
 
     /**
-     * Deletes the item specified at the index
-     * @param index index of the item to delete
+     * Converts local Items into a string
+     * @return String of Items
      */
-    public void deleteItem(int index){
-        clearDoc();
-        items.remove(index);
-        writeList();
+    @Override
+    public String toString(){
+        return "Database(" + this.items.toString() + ")";
+    }
+
+    /**
+     * Clears all data from the database, by renaming an empty file over it so it is never left half cleared
+     */
+    public static void clearDoc(){
+        if(!fileExists){
+            createDatabaseFile();
+        }
+        if(!writeItems(new ArrayList<>(), StorageFormat.TEXT)){
+            return;
+        }
+        synchronized (fileLock) {
+            try{
+                if(Files.deleteIfExists(Paths.get(BINARY_FILE_NAME))){
+                    SafeFiles.syncDirectory(Paths.get(BINARY_FILE_NAME));
+                }
+            }
+            catch (IOException x) {
+                x.printStackTrace(new PrintStream(System.out));
+            }
+            journal.clear();
+        }
+    }
+
+    /**
+     * Checks whether the database holds anything on disk, so a benchmark which clears it can refuse to run over real data
+     * @return true if the database file, its binary copy or its journal isn't empty
+     */
+    static boolean hasData(){
+        synchronized (fileLock) {
+            try {
+                Path text = Paths.get(FILE_NAME);
+                if((Files.exists(text) && Files.size(text) > 0) || Files.exists(Paths.get(BINARY_FILE_NAME))){
+                    return true;
+                }
+            }
+            catch (IOException x){
+                return true;//can't tell, so assume it does
+            }
+            return !journal.isEmpty();
+        }
+    }
+
+    /**
+     * Creates the database file if it doesn't already exist, and recovers from any crash during the last run
+     */
+    private static synchronized void createDatabaseFile(){
+        if(!fileExists) {
+            Path source = Paths.get(FILE_NAME);
+            try{
+                if(!Files.exists(source)){
+                    Files.createDirectories(source.toAbsolutePath().getParent());
+                    Files.createFile(source);
+                    SafeFiles.syncDirectory(source);
+                }
+            } catch (IOException x){
+                x.printStackTrace(new PrintStream(System.out));
+                return;//try again the next time the file is needed
+            }
+            recover();
+            fileExists = true;
+        }
+    }
+
+    /**
+     * Undoes what a crash during the last run could have left half done. Temporary files were never renamed over
+     * the files they would have replaced, so they're deleted. Appends cut off partway leave a last line without its
+     * newline, or a last binary record which is too short, which is dropped.
+     */
+    private static void recover(){
+        synchronized (fileLock) {
+            for(String name: new String[]{FILE_NAME, BINARY_FILE_NAME, JOURNAL_FILE_NAME}){
+                int deleted = SafeFiles.deleteTemporaries(Paths.get(name));
+                if(deleted > 0){
+                    System.out.println("Deleted " + deleted + " unfinished write(s) of " + name);
+                }
+            }
+            recoverText();
+            recoverBinary();
+            if(journal.recover()){
+                System.out.println("Dropped a half-written record from the end of " + JOURNAL_FILE_NAME);
+            }
+        }
+    }
+
+    /**
+     * Drops the last line of the text database if it has no newline, since every line is written with one and an
+     * append was cut off while writing it. A line cut off partway can still parse, as a different ID or a shorter
+     * description, so it is dropped whether it parses or not.
+     */
+    private static void recoverText(){
+        Path p = Paths.get(FILE_NAME);
+        try (FileChannel channel = FileChannel.open(p, READ, WRITE)) {
+            long size = channel.size();
+            if(size == 0){
+                return;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, size - 1);
+            if(last.get(0) == '\n'){
+                return;
+            }
+            channel.truncate(SafeFiles.lastLineStart(channel, size));
+            channel.force(true);
+            System.out.println("Dropped a half-written item from the end of " + FILE_NAME);
+        }
+        catch (IOException x){
+            x.printStackTrace(new PrintStream(System.out));
+        }
+    }
+
+    /**
+     * Drops the last record of the binary database if an append was cut off while writing it
+     */
+    private static void recoverBinary(){
+        Path p = Paths.get(BINARY_FILE_NAME);
+        if(!Files.exists(p)){
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(p, READ, WRITE)) {
+            long complete = BinaryFormat.completeLength(channel);
+            if(complete != -1 && complete < channel.size()){
+                channel.truncate(complete);
+                channel.force(true);
+                System.out.println("Dropped a half-written item from the end of " + BINARY_FILE_NAME);
+            }
+        }
+        catch (IOException x){
+            x.printStackTrace(new PrintStream(System.out));
+        }
+    }
+
+    /**
+     * Converts an item into a line of the database, without the trailing newline
+     * @param toWrite Item to convert
+     * @return the line representing the item
+     */
+    private static String formatLine(Item toWrite){
+        String name = toWrite.getDisplayName();
+        String desc = toWrite.getDescription();
+        Item.Status status = toWrite.getStatus();
+        Item.Priority priority = toWrite.getPriority();
+        String dateString = dateCodec.format(toWrite.getTime());
+
+        String line = name+"|"+status+"|"+priority+"|"+dateString+"|"+desc;
+        if(toWrite.getId() != ItemIndex.NO_ID){
+            line += "|"+toWrite.getId();
+        }
+        return line;
+    }
+
+    /**
+     * Adds an item to the database
+     * @param toWrite Item to write
+     */
+    public void writeItem(Item toWrite){
+        if(!fileExists){
+            createDatabaseFile();
+        }
+        byte data[] = encode(toWrite, storageFormat); //Item -> Bytes
+        Path p = Paths.get(fileName(storageFormat));
+
+        synchronized (fileLock) {
+            try (FileChannel out = FileChannel.open(p, CREATE, WRITE, APPEND)) {
+                if(storageFormat == StorageFormat.BINARY && out.size() == 0){
+                    SafeFiles.writeFully(out, ByteBuffer.wrap(BinaryFormat.header()));
+                }
+                SafeFiles.writeFully(out, ByteBuffer.wrap(data));
+                out.force(false);
+            }
+            catch (IOException x) {
+                x.printStackTrace(new PrintStream(System.out));
+            }
+        }
+    }
+
+    /**
+     * Adds an item to the end of the list and saves it. In ALWAYS sync mode the record is forced to disk after the
+     * lock on this database is released, so changes made by other threads meanwhile share the force; a caller which
+     * holds the lock across several changes forces each one in turn.
+     * @param toAdd Item to add
+     */
+    public void addItem(Item toAdd){
+        syncJournal(add(toAdd));
+    }
+
+    /**
+     * Adds an item to the end of the list and writes it
+     * @param toAdd Item to add
+     * @return sequence number of the journal record to force before the add is saved, or 0
+     */
+    private synchronized long add(Item toAdd){
+        checkLoaded();
+        insert(toAdd);
+        for(Listener listener: listeners){
+            listener.itemAdded(toAdd);
+        }
+        if(journaled){
+            return log(Journal.ADD + "|" + formatLine(toAdd));
+        }
+        else if(asynchronous){
+            rewrite();
+        }
+        else{
+            writeItem(toAdd);
+        }
+        return 0;
+    }
+
+    /**
+     * Appends a record to the journal and queues a compaction once it has grown large enough
+     * @param record the record to append
+     * @return sequence number of the record if the caller has to force it, or 0
+     */
+    private long log(String record){
+        if(asynchronous){
+            pendingRecords.add(record);
+            queueFlush();
+            return 0;
+        }
+        if(!fileExists){
+            createDatabaseFile();
+        }
+        long sequence;
+        try {
+            synchronized (fileLock) {
+                sequence = journal.append(Collections.singletonList(record));
+            }
+        }
+        catch (IOException x){
+            reportWriteFailure(x);
+            return 0;
+        }
+        if(journal.size() >= COMPACTION_THRESHOLD){
+            queueCompaction();
+        }
+        return commit(sequence);
+    }
+
+    /**
+     * Makes journal records safe as the sync mode asks, except in ALWAYS mode, where the caller forces them once it
+     * has released the lock on this database
+     * @param sequence sequence number of the last record to make safe
+     * @return the sequence number to force, or 0 if there is none
+     */
+    private long commit(long sequence){
+        switch (syncMode) {
+            case ALWAYS:
+                return sequence;
+            case INTERVAL:
+                queueSync();
+                return 0;
+            case OS:
+                return 0;
+            default:
+                Util.nyi(Util.getFileName(),Util.getLineNumber());
+                return 0;//this line will never be reached
+        }
+    }
+
+    /**
+     * Schedules the journal to be forced to disk once the sync interval has passed, unless it already is
+     */
+    private void queueSync(){
+        if(syncQueued.compareAndSet(false, true)){
+            syncer.schedule(() -> {
+                syncQueued.set(false);
+                syncJournal(journal.getAppended());
+            }, syncInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Forces journal records to disk, passing a failure to the handler. Threads forcing at the same time share one
+     * force, so this is where changes are committed as a group.
+     * @param sequence sequence number of the last record to force, or 0 for none
+     */
+    private void syncJournal(long sequence){
+        if(journal.isSynced(sequence)){//don't wait on a force in progress for records which are already safe
+            return;
+        }
+        try {
+            journal.sync(sequence);
+        }
+        catch (IOException x){
+            reportWriteFailure(x);
+        }
+    }
+
+    /**
+     * Saves the whole list, on the background writer if writes are asynchronous
+     */
+    private void rewrite(){
+        if(asynchronous){
+            rewritePending = true;
+            pendingRecords.clear();//the rewrite covers them
+            queueFlush();
+            return;
+        }
+        writeList();
+    }
+
+    /**
+     * Schedules the pending changes to be saved on the background writer. Changes made before the writer gets to
+     * them are saved together.
+     */
+    private synchronized void queueFlush(){
+        if(flushQueued){
+            return;
+        }
+        flushQueued = true;
+        writer.execute(this::flushPending);
+    }
+
+    /**
+     * Saves the pending changes. Runs on the background writer.
+     */
+    private void flushPending(){
+        ArrayList<String> records;
+        List<Item> snapshot = null;
+        synchronized (this) {
+            flushQueued = false;
+            records = pendingRecords;
+            pendingRecords = new ArrayList<>();
+            if(rewritePending){
+                rewritePending = false;
+                snapshot = new ArrayList<>(items);
+            }
+        }
+        writePending(records, snapshot);
+        if(journal.size() >= COMPACTION_THRESHOLD){
+            queueCompaction();
+        }
+    }
+
+    /**
+     * Writes changes which were waiting to be saved. Changes which can't be written are queued again, so they're
+     * tried again with the next flush rather than lost.
+     * @param records journal records to append
+     * @param snapshot the whole list to write out instead, or null
+     */
+    private void writePending(List<String> records, List<Item> snapshot){
+        if(!fileExists){
+            createDatabaseFile();
+        }
+        if(snapshot != null){
+            if(writeItems(snapshot)){
+                synchronized (fileLock) {
+                    journal.clear();
+                }
+            }
+            else{
+                synchronized (this) {
+                    rewritePending = true;//the list has every change since, so one rewrite covers them all
+                    pendingRecords.clear();
+                }
+                reportWriteFailure(new IOException("Couldn't rewrite " + fileName(storageFormat)));
+            }
+            return;
+        }
+        long sequence;
+        try {
+            synchronized (fileLock) {
+                sequence = journal.append(records);
+            }
+        }
+        catch (IOException x){
+            synchronized (this) {
+                if(!rewritePending){//put the records back in front of any made since
+                    ArrayList<String> requeued = new ArrayList<>(records);
+                    requeued.addAll(pendingRecords);
+                    pendingRecords = requeued;
+                }
+            }
+            reportWriteFailure(x);
+            return;
+        }
+        syncJournal(commit(sequence));//the whole batch shares one force
+    }
+
+    /**
+     * Passes a failed write to the handler
+     * @param failure what went wrong
+     */
+    private void reportWriteFailure(IOException failure){
+        WriteFailureHandler handler = writeFailureHandler;
+        if(handler != null){
+            handler.writeFailed(failure);
+        }
+        else{
+            failure.printStackTrace(new PrintStream(System.out));
+        }
+    }
+
+    /**
+     * Waits until every change made so far has been saved and forced to disk, whatever the sync mode
+     */
+    public void flush(){
+        Future<?> done = writer.submit(this::flushPending);
+        try {
+            done.get();
+        }
+        catch (InterruptedException | ExecutionException x){
+            x.printStackTrace(new PrintStream(System.out));
+        }
+        syncJournal(journal.getAppended());
+    }
+
+    /**
+     * Applies a journal record to the local list
+     * @param record the record to apply
+     * @throws ParseException if the record is malformed or refers to an item which doesn't exist
+     */
+    private void applyRecord(String record) throws ParseException{
+        if(record.length() < 2 || record.charAt(1) != '|'){
+            throw new ParseException("Malformed journal record: " + record, 0);
+        }
+        try {
+            switch (record.charAt(0)) {
+                case Journal.ADD: {
+                    Item added = parseLine(record.substring(2));
+                    int existing = index.get(added.getId());
+                    if(existing != ItemIndex.NOT_FOUND){//a crash after a snapshot was written but before the journal was cleared replays records the snapshot has
+                        replace(existing, added);
+                    }
+                    else{
+                        insert(added);
+                    }
+                    break;
+                }
+                case Journal.EDIT: {
+                    int bar = record.indexOf('|', 2);
+                    replace(find(Long.parseLong(record.substring(2, bar))), parseLine(record.substring(bar + 1)));
+                    break;
+                }
+                case Journal.DELETE: {
+                    int existing = index.get(Long.parseLong(record.substring(2)));
+                    if(existing != ItemIndex.NOT_FOUND){//already gone if the snapshot was written after the delete
+                        removeAt(existing);
+                    }
+                    break;
+                }
+                default:
+                    throw new ParseException("Unknown journal record: " + record, 0);
+            }
+        }
+        catch (NumberFormatException | IndexOutOfBoundsException a){
+            throw new ParseException("Invalid journal record: " + record, 0);
+        }
+    }
+
+    /**
+     * Finds the position of an item which has to exist
+     * @param id ID of the item
+     * @return index of the item
+     * @throws IndexOutOfBoundsException if there is no item with that ID
+     */
+    private int find(long id){
+        int i = index.get(id);
+        if(i == ItemIndex.NOT_FOUND){
+            throw new IndexOutOfBoundsException("No item with ID " + id);
+        }
+        return i;
+    }
+
+    /**
+     * Schedules the journal to be folded into the database file on the background thread
+     */
+    private synchronized void queueCompaction(){
+        if(compactionQueued){
+            return;
+        }
+        compactionQueued = true;
+        writer.execute(this::compact);
+    }
+
+    /**
+     * Rewrites the database file from a snapshot of the list and drops the journal segments it covers
+     */
+    private void compact(){
+        ArrayList<Item> snapshot;
+        long mark = 0;
+        synchronized (this) {
+            compactionQueued = false;
+            if(loading){//the list isn't complete, so the compaction is queued again when the load finishes
+                return;
+            }
+            synchronized (fileLock) {
+                snapshot = new ArrayList<>(items);
+                try {
+                    journal.append(pendingRecords);//the snapshot includes these, so they have to come before the mark
+                    pendingRecords = new ArrayList<>();
+                }
+                catch (IOException x){//they stay queued, and replaying them after the snapshot changes nothing
+                    reportWriteFailure(x);
+                }
+                try {
+                    mark = journal.roll();//records appended from here on go after the snapshot
+                }
+                catch (IOException x){
+                    reportWriteFailure(x);
+                }
+            }
+        }
+        if(!writeItems(snapshot)){
+            synchronized (this) {
+                rewritePending = true;//the queued records may not be in the journal, but the next rewrite covers them
+                pendingRecords.clear();
+            }
+            reportWriteFailure(new IOException("Couldn't rewrite " + fileName(storageFormat)));
+            return;
+        }
+        if(mark > 0){
+            synchronized (fileLock) {
+                journal.dropBefore(mark);
+            }
+        }
+    }
+
+    /**
+     * Sets whether edits and deletions are appended to the journal instead of rewriting the whole database
+     * @param journaled true to use the journal
+     */
+    public void setJournaled(boolean journaled){
+        this.journaled = journaled;
+    }
+
+    /**
+     * Sets when journal records are forced to disk. Switching to ALWAYS forces the records not yet forced.
+     * @param syncMode the mode to use
+     */
+    public void setSyncMode(SyncMode syncMode){
+        this.syncMode = syncMode;
+        if(syncMode == SyncMode.ALWAYS){
+            syncJournal(journal.getAppended());
+        }
+    }
+
+    /**
+     * Gets when journal records are forced to disk
+     * @return the mode in use
+     */
+    public SyncMode getSyncMode(){
+        return syncMode;
+    }
+
+    /**
+     * Sets the longest a journal record waits to be forced to disk in INTERVAL mode
+     * @param syncInterval ms
+     */
+    public void setSyncInterval(long syncInterval){
+        this.syncInterval = syncInterval;
+    }
+
+    /**
+     * Gets the longest a journal record waits to be forced to disk in INTERVAL mode
+     * @return ms
+     */
+    public long getSyncInterval(){
+        return syncInterval;
+    }
+
+    /**
+     * Gets the number of times journal records have been forced to disk, to measure how many changes share each force
+     * @return number of forces
+     */
+    static long getJournalSyncs(){
+        return journal.getSyncs();
+    }
+
+    /**
+     * Sets whether changes are saved on a background writer instead of before each change returns. Changes are
+     * still made to the local list straight away. Turning this off waits for the pending changes to be saved.
+     * @param asynchronous true to save in the background
+     */
+    public void setAsynchronous(boolean asynchronous){
+        this.asynchronous = asynchronous;
+        if(!asynchronous){
+            flush();
+        }
+    }
+
+    /**
+     * Checks whether changes are saved on a background writer
+     * @return true if changes are saved in the background
+     */
+    public boolean isAsynchronous(){
+        return asynchronous;
+    }
+
+    /**
+     * Sets what is told when a background write fails. By default the failure is printed.
+     * @param writeFailureHandler the handler, or null to print failures
+     */
+    public void setWriteFailureHandler(WriteFailureHandler writeFailureHandler){
+        this.writeFailureHandler = writeFailureHandler;
+    }
+
+    /**
+     * Checks whether edits and deletions are appended to the journal
+     * @return true if the journal is used
+     */
+    public boolean isJournaled(){
+        return journaled;
+    }
+
+    /**
+     * Sets how fillList reads the database file. Files below a size threshold, or any file on a single core, are always read sequentially.
+     * @param loadMode the mode to use
+     */
+    public void setLoadMode(LoadMode loadMode){
+        this.loadMode = loadMode;
+    }
+
+    /**
+     * Gets how fillList reads the database file
+     * @return the mode in use
+     */
+    public LoadMode getLoadMode(){
+        return loadMode;
+    }
+
+    /**
+     * Sets which format the database is stored in. Switching to the binary format for the first time converts
+     * the text database on the next fillList.
+     * @param storageFormat the format to use
+     */
+    public void setStorageFormat(StorageFormat storageFormat){
+        this.storageFormat = storageFormat;
+    }
+
+    /**
+     * Gets which format the database is stored in
+     * @return the format in use
+     */
+    public StorageFormat getStorageFormat(){
+        return storageFormat;
+    }
+
+    /**
+     * Sets how the items are kept in memory, moving the current items into the new store
+     * @param storeMode the store to use
+     */
+    public synchronized void setStoreMode(StoreMode storeMode){
+        if(storeMode == this.storeMode){
+            return;
+        }
+        this.storeMode = storeMode;
+        this.items = (storeMode == StoreMode.COLUMNAR) ? store(items) : new ArrayList<>(items);
+        reindex();
+        for(Listener listener: listeners){
+            listener.itemsReloaded();
+        }
+    }
+
+    /**
+     * Gets how the items are kept in memory
+     * @return the store in use
+     */
+    public StoreMode getStoreMode(){
+        return storeMode;
+    }
+
+    /**
+     * Copies items into a new ItemStore
+     * @param in the items
+     * @return the store
+     */
+    private static ItemStore store(List<Item> in){
+        ItemStore out = new ItemStore();
+        out.addAll(in);
+        return out;
+    }
+
+    /**
+     * Parses a date from a string
+     * @param in String to parse
+     * @return Date parsed
+     * @throws ParseException Failure
+     */
+    public Date parseDate(String in) throws ParseException{//TODO: handle exception here?
+        return new Date(dateCodec.parse(in));
+    }
+
+    /**
+     * Parses a whole line from the database
+     * @param input String of the whole line
+     * @return An item parsed from the line
+     * @throws ParseException Failure
+     */
+    public Item parseLine(String input) throws ParseException{
+        return parseLine(input,0,input.length());
+    }
+
+    /**
+     * Parses one line of the database from a section of a larger sequence of characters.
+     * The line is scanned once, and only the name and description are copied out of it.
+     * @param input characters containing the line
+     * @param start index of the first character of the line
+     * @param end index after the last character of the line, excluding the newline
+     * @return An item parsed from the line
+     * @throws ParseException Failure
+     */
+    public Item parseLine(CharSequence input, int start, int end) throws ParseException{
+        int bar1 = indexOfBar(input,start,end);
+        int bar2 = indexOfBar(input,bar1+1,end);
+        int bar3 = indexOfBar(input,bar2+1,end);
+        int bar4 = indexOfBar(input,bar3+1,end);
+
+        String name = input.subSequence(start,bar1).toString();
+
+        Item.Status status = Item.Status.parse(input,bar1+1,bar2);
+        if(status == null){
+            status = Item.Status.UNFINISHED;
+        }
+
+        Item.Priority priority = Item.Priority.parse(input,bar2+1,bar3);
+        if(priority == null){
+            priority = Item.Priority.LOW;
+        }
+
+        long time = dateCodec.parse(input,bar3+1,bar4);
+
+        int bar5 = end;//lines written before items had IDs end with the description, which can contain "|"
+        while(bar5 > bar4 && input.charAt(bar5-1) != '|'){
+            bar5--;
+        }
+        long id = (bar5 > bar4+1) ? parseId(input,bar5,end) : ItemIndex.NO_ID;
+        int descEnd = (id == ItemIndex.NO_ID) ? end : bar5-1;
+        String desc = input.subSequence(bar4+1,descEnd).toString();
+        Item out = new Item(name,desc,status,priority,time);
+        if(id != ItemIndex.NO_ID){
+            out.setId(id);
+        }
+        return out;
+    }
+
+    /**
+     * Parses an item ID from the section of a line after its last delimiter
+     * @param input characters containing the ID
+     * @param start index of the first digit
+     * @param end index after the last digit
+     * @return the ID, or NO_ID if the section isn't a positive number and so is part of the description
+     */
+    private static long parseId(CharSequence input, int start, int end){
+        if(start == end || end - start > 18){
+            return ItemIndex.NO_ID;
+        }
+        long id = 0;
+        for(int i = start; i < end; i++){
+            char c = input.charAt(i);
+            if(c < '0' || c > '9'){
+                return ItemIndex.NO_ID;
+            }
+            id = id * 10 + (c - '0');
+        }
+        return id;
+    }
+
+    /**
+     * Finds the next field delimiter in a line
+     * @param input characters containing the line
+     * @param from index to start searching from
+     * @param end index after the last character of the line
+     * @return index of the delimiter
+     * @throws ParseException if the line has no more delimiters
+     */
+    private static int indexOfBar(CharSequence input, int from, int end) throws ParseException{
+        for(int i = from; i < end; i++){
+            if(input.charAt(i) == '|'){
+                return i;
+            }
+        }
+        throw new ParseException("Missing field delimiter", from);
+    }
+
+    /**
+     * Fills Items with data from the database. If changes are saved in the background, waits for them to be saved first.
+     */
+    public void fillList(){
+        if(asynchronous){
+            flush();
+        }
+        readList();
+    }
+
+    /**
+     * Replaces the local list with the database file and journal
+     */
+    private synchronized void readList(){
+        if(!fileExists){
+            createDatabaseFile();
+        }
+        loadGeneration++;
+        loading = false;
+        if(rewritePending || !pendingRecords.isEmpty()){//save changes made since the flush, so they are read back
+            writePending(pendingRecords, rewritePending ? new ArrayList<>(items) : null);
+            pendingRecords = new ArrayList<>();
+            rewritePending = false;
+        }
+        items.clear();
+        idsGivenOut = false;
+        synchronized (fileLock) {
+            readFile();
+            reindex();
+            for(String record: journal.read()){
+                try {
+                    applyRecord(record);
+                }
+                catch (ParseException a){
+                    a.printStackTrace(System.out);
+                }
+            }
+        }
+        for(Listener listener: listeners){
+            listener.itemsReloaded();
+        }
+        if(journal.size() >= COMPACTION_THRESHOLD || idsGivenOut){//saves the IDs given out, so the next start can load lazily
+            queueCompaction();
+        }
+    }
+
+    /**
+     * Fills Items with data from the database without waiting for the whole file. The first page of the file is read
+     * straight away, and the rest is read on a background thread and added to the list in batches, each of which is
+     * handed to the publisher to add so that listeners are told about it on the publisher's thread. The journal is
+     * read first and applied to each item as it is read.
+     *
+     * The first page is the first items in the file, not the earliest items by date: finding those would mean reading
+     * the whole file before showing anything. Items are appended to the file as they're added, so the two are usually
+     * the same, and a view sorted by date puts each batch in its place as it arrives.
+     *
+     * The database can't be changed until the load has finished. Binary databases, and databases with items or
+     * journal additions without IDs, are read in full instead, and the IDs given out are then written to the file so
+     * the next load can be lazy.
+     *
+     * @param pageSize number of items to read straight away, and to add in each batch after that
+     * @param publisher runs the additions of the batches, such as the UI thread
+     * @param loadListener told after each batch and when the load has finished
+     */
+    public void fillListLazily(int pageSize, Executor publisher, LoadListener loadListener){
+        if(asynchronous){
+            flush();
+        }
+        Replay replay = new Replay();
+        BufferedReader reader;
+        final int GENERATION;
+        synchronized (this) {
+            reader = startLazyLoad(pageSize, replay);
+            GENERATION = loadGeneration;
+        }
+        if(reader == null){
+            loadListener.loadFinished();
+            return;
+        }
+        loader.execute(() -> loadRest(reader, pageSize, replay, GENERATION, publisher, loadListener));
+    }
+
+    /**
+     * Reads the first page of a lazy load, or the whole database if it can't be loaded lazily
+     * @param pageSize number of items to read
+     * @param replay the journal, folded while reading the first page
+     * @return the reader positioned after the first page, or null if the whole database has been read
+     */
+    private synchronized BufferedReader startLazyLoad(int pageSize, Replay replay){
+        if(storageFormat == StorageFormat.BINARY || rewritePending || !pendingRecords.isEmpty()){
+            readList();
+            return null;
+        }
+        if(!fileExists){
+            createDatabaseFile();
+        }
+        ArrayList<Item> firstPage = new ArrayList<>();
+        BufferedReader reader = null;
+        boolean lazy = false;
+        synchronized (fileLock) {
+            try {
+                lazy = true;
+                for(String record: journal.read()){
+                    lazy &= replay.fold(record, this);
+                }
+                reader = new BufferedReader(new InputStreamReader(new FileInputStream(FILE_NAME), CHARSET));
+                lazy &= readBatch(reader, pageSize, replay, firstPage, new long[1]);//if the file fits in the first page, just read it all
+                for(Item a: firstPage){
+                    lazy &= a.getId() != ItemIndex.NO_ID;//IDs can't be given out until the largest one in the file is known
+                }
+            }
+            catch (ParseException | IOException a){
+                a.printStackTrace(System.out);
+                lazy = false;
+            }
+        }
+        if(!lazy){
+            if(reader != null){
+                try {
+                    reader.close();
+                }
+                catch (IOException x){
+                    x.printStackTrace(new PrintStream(System.out));
+                }
+            }
+            readList();
+            return null;
+        }
+        loadGeneration++;
+        items.clear();
+        index.clear();
+        Arrays.fill(counts, 0);
+        for(Item a: firstPage){
+            insert(a);
+        }
+        loading = true;
+        for(Listener listener: listeners){
+            listener.itemsReloaded();
+        }
+        return reader;
+    }
+
+    /**
+     * Reads the rest of a lazy load in batches. Runs on the loader thread.
+     * @param reader reader positioned after the first page
+     * @param batchSize number of items in each batch
+     * @param replay the folded journal
+     * @param generation the load this belongs to
+     * @param publisher runs the additions of the batches
+     * @param loadListener told after each batch and when the load has finished
+     */
+    private void loadRest(BufferedReader reader, int batchSize, Replay replay, int generation, Executor publisher, LoadListener loadListener){
+        long total = 1;
+        try {
+            total = Math.max(1, Files.size(Paths.get(FILE_NAME)));
+        }
+        catch (IOException x){
+            x.printStackTrace(new PrintStream(System.out));
+        }
+        long read[] = new long[1];
+        try (BufferedReader in = reader) {
+            boolean more = true;
+            while(more){
+                synchronized (this) {
+                    if(generation != loadGeneration){
+                        return;
+                    }
+                }
+                ArrayList<Item> batch = new ArrayList<>(batchSize);
+                more = readBatch(in, batchSize, replay, batch, read);
+                for(Item a: batch){
+                    if(a.getId() == ItemIndex.NO_ID){//IDs can't be given out until the largest one in the file is known
+                        publisher.execute(() -> {
+                            if(reloadInFull(generation)){
+                                loadListener.loadFinished();
+                            }
+                        });
+                        return;
+                    }
+                }
+                final double FRACTION = more ? Math.min(1.0, (double)read[0] / total) : 1.0;
+                publisher.execute(() -> {
+                    if(publishBatch(batch, generation)){
+                        loadListener.batchLoaded(FRACTION);
+                    }
+                });
+            }
+        }
+        catch (IOException x){
+            x.printStackTrace(new PrintStream(System.out));
+        }
+        publisher.execute(() -> {
+            if(finishLazyLoad(replay, generation)){
+                loadListener.loadFinished();
+            }
+        });
+    }
+
+    /**
+     * Reads up to a batch of items, applying the journal to each
+     * @param reader reader of the database file
+     * @param batchSize largest number of items to read
+     * @param replay the folded journal
+     * @param out list to add the items to
+     * @param read running count of the characters read, in its only element
+     * @return true if the file may have more items
+     * @throws IOException Failure
+     */
+    private boolean readBatch(BufferedReader reader, int batchSize, Replay replay, List<Item> out, long read[]) throws IOException{
+        while(out.size() < batchSize){
+            String line = reader.readLine();
+            if(line == null){
+                return false;
+            }
+            read[0] += line.length() + 1;
+            try {
+                Item a = replay.apply(parseLine(line));
+                if(a != null){
+                    out.add(a);
+                }
+            }
+            catch (ParseException a){
+                a.printStackTrace(System.out);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds a batch of a lazy load to the list and tells the listeners
+     * @param batch the items
+     * @param generation the load the batch belongs to
+     * @return true if the batch was added, false if another load has started since
+     */
+    private synchronized boolean publishBatch(List<Item> batch, int generation){
+        if(generation != loadGeneration){
+            return false;
+        }
+        for(Item a: batch){
+            insert(a);
+        }
+        for(Listener listener: listeners){
+            listener.itemsAdded(batch);
+        }
+        return true;
+    }
+
+    /**
+     * Gives up on a lazy load which found items without IDs partway through the file, and reads the whole database
+     * straight away instead
+     * @param generation the load to give up on
+     * @return true if the database was read, false if another load has started since
+     */
+    private synchronized boolean reloadInFull(int generation){
+        if(generation != loadGeneration){
+            return false;
+        }
+        loading = false;
+        readList();
+        return true;
+    }
+
+    /**
+     * Adds the items the journal added and lets the database be changed again
+     * @param replay the folded journal
+     * @param generation the load which finished
+     * @return true if the load finished, false if another load has started since
+     */
+    private synchronized boolean finishLazyLoad(Replay replay, int generation){
+        if(generation != loadGeneration){
+            return false;
+        }
+        publishBatch(new ArrayList<>(replay.adds.values()), generation);
+        loading = false;
+        if(journal.size() >= COMPACTION_THRESHOLD){
+            queueCompaction();
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a lazy load is still adding items, during which the database can't be changed
+     * @return true if items are still being loaded
+     */
+    public boolean isLoading(){
+        return loading;
+    }
+
+    /**
+     * Makes sure the database isn't being loaded before it is changed
+     * @throws IllegalStateException if a lazy load hasn't finished
+     */
+    private void checkLoaded(){
+        if(loading){
+            throw new IllegalStateException("The database can't be changed until it has finished loading");
+        }
+    }
+
+    /**
+     * Reads the items in the database file into the local list
+     */
+    private void readFile(){
+        if(storageFormat == StorageFormat.BINARY){
+            readFileBinary();
+            return;
+        }
+        if(loadMode == LoadMode.MAPPED){
+            readFileMapped();
+            return;
+        }
+        if(loadMode == LoadMode.PARALLEL && ForkJoinPool.getCommonPoolParallelism() > 1){
+            try {
+                if(Files.size(Paths.get(FILE_NAME)) >= PARALLEL_LOAD_THRESHOLD){
+                    readFileParallel();
+                    return;
+                }
+            }
+            catch (IOException x){
+                x.printStackTrace(new PrintStream(System.out));
+            }
+        }
+        readFileSequential();
+    }
+
+    /**
+     * Reads the binary database file, converting the text database into it first if it doesn't exist yet
+     */
+    private void readFileBinary(){
+        Path p = Paths.get(BINARY_FILE_NAME);
+        try {
+            if(!Files.exists(p) && !writeItems(readTextFile(), StorageFormat.BINARY)){
+                return;
+            }
+            BinaryFormat.decode(ByteBuffer.wrap(Files.readAllBytes(p)), items);
+        }
+        catch (IOException x){
+            x.printStackTrace(new PrintStream(System.out));
+        }
+    }
+
+    /**
+     * Reads the text database file without touching the local list
+     * @return the items in the text database
+     */
+    private List<Item> readTextFile(){
+        Database text = new Database();
+        text.setStorageFormat(StorageFormat.TEXT);
+        text.setLoadMode(loadMode);
+        text.readFile();
+        return text.getItems();
+    }
+
+    /**
+     * Splits the database file into chunks on line boundaries, parses the chunks on the fork-join pool,
+     * and adds their items to the local list in file order
+     */
+    private void readFileParallel(){
+        byte data[];
+        try {
+            data = Files.readAllBytes(Paths.get(FILE_NAME));
+        }
+        catch (IOException x){
+            x.printStackTrace(new PrintStream(System.out));
+            return;
+        }
+        int chunkCount = (int)Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism() * 4L, data.length / MIN_CHUNK_SIZE));
+        ArrayList<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+        int from = 0;
+        for(int i = 1; i <= chunkCount && from < data.length; i++){
+            int to = (i == chunkCount) ? data.length : Math.max(from, (int)((long)data.length * i / chunkCount));
+            while(to > 0 && to < data.length && data[to - 1] != '\n'){
+                to++;
+            }
+            if(to > from){
+                final int start = from, end = to;
+                tasks.add(ForkJoinPool.commonPool().submit(() -> parseChunk(new String(data, start, end - start, CHARSET))));
+            }
+            from = to;
+        }
+        int total = 0;
+        ArrayList<Chunk> chunks = new ArrayList<>();
+        for(ForkJoinTask<Chunk> task: tasks){
+            Chunk chunk = task.join();
+            chunks.add(chunk);
+            total += chunk.items.size();
+        }
+        if(items instanceof ArrayList){
+            ((ArrayList<Item>)items).ensureCapacity(total);
+        }
+        for(Chunk chunk: chunks){
+            for(ParseException a: chunk.failures){
+                a.printStackTrace(System.out);
+            }
+            items.addAll(chunk.items);
+        }
+    }
+
+    /**
+     * Maps the database file into memory one window at a time and parses the lines straight out of the mapped bytes,
+     * without decoding the file or reading each line into a String
+     */
+    private void readFileMapped(){
+        try (FileChannel channel = FileChannel.open(Paths.get(FILE_NAME), READ)) {
+            long size = channel.size();
+            long position = 0;
+            long window = MAP_WINDOW_SIZE;
+            while(position < size){
+                long length = Math.min(window, size - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int end = (int)length;
+                if(position + length < size){//only parse up to the last full line in this window
+                    while(end > 0 && buffer.get(end - 1) != '\n'){
+                        end--;
+                    }
+                    if(end == 0){//one line fills the whole window, so map a larger one
+                        window = Math.min(window * 2, Integer.MAX_VALUE);
+                        continue;
+                    }
+                }
+                Chunk chunk = parseChunk(new MappedText(buffer, end));
+                for(ParseException a: chunk.failures){
+                    a.printStackTrace(System.out);
+                }
+                items.addAll(chunk.items);
+                position += end;
+                window = MAP_WINDOW_SIZE;
+            }
+        }
+        catch (IOException x){
+            x.printStackTrace(new PrintStream(System.out));
+        }
+    }
+
+    /**
+     * Parses every line in a chunk of the database file
+     * @param text the chunk, which starts at the beginning of a line and ends after a newline or at the end of the file
+     * @return the items parsed and the lines which failed to parse
+     */
+    private Chunk parseChunk(CharSequence text){
+        Chunk out = new Chunk();
+        int length = text.length();
+        int start = 0;
+        while(start < length){
+            int end = start;
+            while(end < length && text.charAt(end) != '\n'){
+                end++;
+            }
+            int next = end + 1;
+            if(end > start && text.charAt(end - 1) == '\r'){
+                end--;
+            }
+            try {
+                out.items.add(parseLine(text,start,end));
+            }
+            catch (ParseException a){
+                out.failures.add(a);
+            }
+            start = next;
+        }
+        return out;
+    }
+
+    /**
+     * Reads the database file one line at a time on the calling thread
+     */
+    private void readFileSequential(){
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(FILE_NAME), CHARSET));
+            String line = reader.readLine();
+
+            while (line != null){
+                try {
+                    items.add(parseLine(line));
+                }
+                catch (ParseException a){
+                    a.printStackTrace(System.out);
+                }
+                finally {
+                    line = reader.readLine();
+                }
+            }
+            reader.close();
+        }
+        catch (IOException x){
+            x.printStackTrace(new PrintStream(System.out));
+        }
+    }
+
+    /**
+     * Replaces the database with test items
+     */
+    public static void convertDataToTest(){
+        final int LENGTH = 30;
+        Database a = new Database();
+        for(int i = 0; i < LENGTH; i++){
+            Item z = new Item("TestItem#" + (i + 1), "This is a test #" + (i + 1));
+            a.getItems().add(z);
+        }
+        a.writeList();
+    }
+
+    /**
+     * Edits items based on their index and the item to replace it with. Saved as addItem is.
+     * @param index index of the item
+     * @param in edited item
+     */
+    public void editItem(int index, Item in){
+        syncJournal(edit(index, in));
+    }
+
+    /**
+     * Replaces an item and writes the change
+     * @param index index of the item
+     * @param in edited item
+     * @return sequence number of the journal record to force before the edit is saved, or 0
+     */
+    private synchronized long edit(int index, Item in){
+        checkLoaded();
+        replace(index,in);
+        for(Listener listener: listeners){
+            listener.itemEdited(in);
+        }
+        if(journaled){
+            return log(Journal.EDIT + "|" + in.getId() + "|" + formatLine(in));
+        }
+        rewrite();
+        return 0;
+    }
+
+    /**
+     * Edits an item based on its ID. Saved as addItem is.
+     * @param id ID of the item
+     * @param in edited item, which keeps the ID
+     * @return true if there was an item with that ID
+     */
+    public boolean editItemById(long id, Item in){
+        long sequence;
+        synchronized (this) {
+            int i = index.get(id);
+            if(i == ItemIndex.NOT_FOUND){
+                return false;
+            }
+            in.setId(id);
+            sequence = edit(i,in);
+        }
+        syncJournal(sequence);
+        return true;
+    }
+
+    /**
+     * Edits an item in the database
+     * @param item Replacement PositionedItem
+     */
+    public void editItem(PositionedItem item){
+        editItem(item.getIndex(),item.getItem());
+    }
+
+    /**
+     * Toggles the status of an item by replacing it with a copy, so the item the caller holds keeps its old status
+     * and the counters are moved from the old status to the new one. Saved as addItem is.
+     * @param index index of the item
+     * @return the replacement item
+     */
+    public Item toggleStatus(int index){
+        Item toggled;
+        long sequence;
+        synchronized (this) {
+            Item old = items.get(index);
+            toggled = new Item(old.getDisplayName(),old.getDescription(),Item.Status.not(old.getStatus()),old.getPriority(),old.getTime());
+            toggled.setId(old.getId());
+            sequence = edit(index,toggled);
+        }
+        syncJournal(sequence);
+        return toggled;
+    }
+
+    /**
+     * Deletes the item specified at the index. Saved as addItem is.
+     * @param index index of the item to delete
+     */
+    public void deleteItem(int index){
+        syncJournal(delete(index));
+    }
+
+    /**
+     * Removes an item and writes the change
+     * @param index index of the item to delete
+     * @return sequence number of the journal record to force before the delete is saved, or 0
+     */
+    private synchronized long delete(int index){
+        checkLoaded();
+        Item removed = items.get(index);
+        removeAt(index);
+        for(Listener listener: listeners){
+            listener.itemDeleted(removed);
+        }
+        if(journaled){
+            return log(Journal.DELETE + "|" + removed.getId());
+        }
+        rewrite();
+        return 0;
+    }
+
+    /**
+     * Deletes an item based on its ID. Saved as addItem is.
+     * @param id ID of the item to delete
+     * @return true if there was an item with that ID
+     */
+    public boolean deleteItemById(long id){
+        long sequence;
+        synchronized (this) {
+            int i = index.get(id);
+            if(i == ItemIndex.NOT_FOUND){
+                return false;
+            }
+            sequence = delete(i);
+        }
+        syncJournal(sequence);
+        return true;
     }
 
     /**
@@ -376,11 +2156,31 @@ public class Database {
     }
 
     /**
-     * Constructs new database based on an ArrayList<Item>
-     * @param items ArrayList of items for the new Database
+     * Constructs new database based on a List<Item>, which uses the columnar store if it is an ItemStore
+     * @param items List of items for the new Database
      */
-    public Database(ArrayList<Item> items){
+    public Database(List<Item> items){
         this.items = items;
+        this.storeMode = (items instanceof ItemStore) ? StoreMode.COLUMNAR : StoreMode.OBJECTS;
+        this.index = new ItemIndex();
+        this.nextId = 1;
+        this.listeners = new ArrayList<>();
+        this.counts = new int[Item.Status.values().length * Item.Priority.values().length];
+        reindex();
+        this.journaled = true;
+        this.compactionQueued = false;
+        this.idsGivenOut = false;
+        this.asynchronous = false;
+        this.flushQueued = false;
+        this.rewritePending = false;
+        this.pendingRecords = new ArrayList<>();
+        this.writeFailureHandler = null;
+        this.loading = false;
+        this.loadGeneration = 0;
+        this.loadMode = LoadMode.PARALLEL;
+        this.storageFormat = StorageFormat.TEXT;
+        this.syncMode = SyncMode.ALWAYS;
+        this.syncInterval = DEFAULT_SYNC_INTERVAL;
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,221 @@
+package main.java.control;
+
+import main.java.util.Util;
+
+import java.text.ParseException;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.zone.ZoneRules;
+
+/**
+ * Converts item dates to and from the text used in the database, ex: "Fri 06 09 2017 10:39:52 PM".
+ *
+ * Most items in a database were created on the same day or even the same second, so the last day and the last
+ * timestamp seen are cached and reused without reparsing. The cache entries are immutable, so one codec can be
+ * shared by any number of threads.
+ *
+ * @author Adrian Hardt
+ */
+
+public class DateCodec {
+    public static final String PATTERN = "E MM dd y hh:mm:ss a";
+
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    //offsets of each field in the fixed-width layout, counted from the character after the day of the week
+    private static final int MONTH = 0, DAY = 3, YEAR = 6, HOUR = 11, MINUTE = 14, SECOND = 17, MARKER = 20;
+    private static final int DAY_LENGTH = 10;//"MM dd yyyy"
+    private static final int LAYOUT_LENGTH = 22;//"MM dd yyyy hh:mm:ss AM"
+
+    /**
+     * A parsed day, along with its UTC offset if it doesn't change during the day
+     */
+    private static class CachedDay{
+        private final String key;
+        private final long epochDay;
+        private final boolean fixedOffset;
+        private final int offsetSeconds;
+
+        private CachedDay(String key, long epochDay, boolean fixedOffset, int offsetSeconds){
+            this.key = key;
+            this.epochDay = epochDay;
+            this.fixedOffset = fixedOffset;
+            this.offsetSeconds = offsetSeconds;
+        }
+    }
+
+    /**
+     * A timestamp and its text, down to the second
+     */
+    private static class CachedTime{
+        private final String text;
+        private final long second;
+
+        private CachedTime(String text, long second){
+            this.text = text;
+            this.second = second;
+        }
+    }
+
+    private final DateTimeFormatter formatter;
+    private final ZoneId zone;
+    private final ZoneRules rules;
+
+    private volatile CachedDay lastDay;
+    private volatile CachedTime lastParsed;
+    private volatile CachedTime lastFormatted;
+
+    /**
+     * Converts a time into its text
+     * @param millis milliseconds since the epoch
+     * @return the text of the time, to the second
+     */
+    public String format(long millis){
+        long second = Math.floorDiv(millis, 1000);
+        CachedTime cached = lastFormatted;
+        if(cached != null && cached.second == second){
+            return cached.text;
+        }
+        String text = formatter.format(Instant.ofEpochSecond(second).atZone(zone));
+        lastFormatted = new CachedTime(text, second);
+        return text;
+    }
+
+    /**
+     * Parses a time from its text
+     * @param in text to parse
+     * @return milliseconds since the epoch
+     * @throws ParseException Failure
+     */
+    public long parse(String in) throws ParseException{
+        return parse(in, 0, in.length());
+    }
+
+    /**
+     * Parses a time from a section of a sequence of characters
+     * @param in characters containing the time
+     * @param start index of the first character of the time
+     * @param end index after the last character of the time
+     * @return milliseconds since the epoch
+     * @throws ParseException Failure
+     */
+    public long parse(CharSequence in, int start, int end) throws ParseException{
+        CachedTime cached = lastParsed;
+        if(cached != null && Util.regionEquals(in, start, end, cached.text)){
+            return cached.second * 1000;
+        }
+        int fields = start;
+        while(fields < end && in.charAt(fields) != ' '){//skip the day of the week, which is implied by the date
+            fields++;
+        }
+        fields++;
+        long second = (end - fields == LAYOUT_LENGTH) ? parseFixed(in, fields) : -1;
+        if(second == -1){
+            second = parseText(in, start, end);
+        }
+        lastParsed = new CachedTime(in.subSequence(start, end).toString(), second);
+        return second * 1000;
+    }
+
+    /**
+     * Parses the fixed-width part of a time without allocating, reusing the cached day when it matches
+     * @param in characters containing the time
+     * @param fields index of the month, the first field after the day of the week
+     * @return seconds since the epoch, or -1 if the text isn't in the expected layout
+     */
+    private long parseFixed(CharSequence in, int fields){
+        int hour = twoDigits(in, fields + HOUR), minute = twoDigits(in, fields + MINUTE), second = twoDigits(in, fields + SECOND);
+        if(hour < 1 || hour > 12 || minute < 0 || minute > 59 || second < 0 || second > 59){
+            return -1;
+        }
+        if(Util.regionEquals(in, fields + MARKER, fields + MARKER + 2, "PM")){
+            hour = hour % 12 + 12;
+        }
+        else if(Util.regionEquals(in, fields + MARKER, fields + MARKER + 2, "AM")){
+            hour = hour % 12;
+        }
+        else{
+            return -1;
+        }
+        int secondOfDay = hour * 3600 + minute * 60 + second;
+
+        CachedDay day = lastDay;
+        if(day == null || !Util.regionEquals(in, fields, fields + DAY_LENGTH, day.key)){
+            int month = twoDigits(in, fields + MONTH), dayOfMonth = twoDigits(in, fields + DAY);
+            int year = twoDigits(in, fields + YEAR) * 100 + twoDigits(in, fields + YEAR + 2);
+            if(month < 1 || month > 12 || dayOfMonth < 1 || dayOfMonth > 31 || year < 0){
+                return -1;
+            }
+            LocalDate date;
+            try {
+                date = LocalDate.of(year, month, dayOfMonth);
+            }
+            catch (DateTimeException a){
+                return -1;
+            }
+            ZoneOffset startOffset = rules.getOffset(date.atStartOfDay());
+            ZoneOffset endOffset = rules.getOffset(date.atTime(23, 59, 59));
+            day = new CachedDay(in.subSequence(fields, fields + DAY_LENGTH).toString(), date.toEpochDay(), startOffset.equals(endOffset), startOffset.getTotalSeconds());
+            lastDay = day;
+        }
+        if(!day.fixedOffset){//the offset changes during this day, so let the zone rules resolve it, taking the later offset like SimpleDateFormat did
+            return LocalDateTime.of(LocalDate.ofEpochDay(day.epochDay), LocalTime.ofSecondOfDay(secondOfDay)).atZone(zone).withLaterOffsetAtOverlap().toEpochSecond();
+        }
+        return day.epochDay * SECONDS_PER_DAY + secondOfDay - day.offsetSeconds;
+    }
+
+    /**
+     * Reads two decimal digits
+     * @param in characters containing the digits
+     * @param at index of the first digit
+     * @return the number, or -1 if either character isn't a digit
+     */
+    private static int twoDigits(CharSequence in, int at){
+        char a = in.charAt(at), b = in.charAt(at + 1);
+        if(a < '0' || a > '9' || b < '0' || b > '9'){
+            return -1;
+        }
+        return (a - '0') * 10 + (b - '0');
+    }
+
+    /**
+     * Parses a time using the full formatter, for text which isn't in the fixed-width layout
+     * @param in characters containing the time
+     * @param start index of the first character of the time
+     * @param end index after the last character of the time
+     * @return seconds since the epoch
+     * @throws ParseException Failure
+     */
+    private long parseText(CharSequence in, int start, int end) throws ParseException{
+        try {
+            return LocalDateTime.parse(in.subSequence(start, end), formatter).atZone(zone).withLaterOffsetAtOverlap().toEpochSecond();
+        }
+        catch (DateTimeParseException a){
+            throw new ParseException(a.getMessage(), a.getErrorIndex());
+        }
+    }
+
+    /**
+     * Constructs a codec for the system time zone
+     */
+    public DateCodec(){
+        this(ZoneId.systemDefault());
+    }
+
+    /**
+     * Constructs a codec for a time zone
+     * @param zone the time zone dates are written in
+     */
+    public DateCodec(ZoneId zone){
+        this.formatter = DateTimeFormatter.ofPattern(PATTERN);
+        this.zone = zone;
+        this.rules = zone.getRules();
+    }
+}
@@ -1,5 +1,6 @@
 package main.java.control;
 
+import main.java.util.AlphanumComparator;
 import main.java.util.Util;
 
 import java.util.Date;
@@ -66,10 +67,21 @@ public class Item {
 		 * @return the Status if it can be parsed, null otherwise
 		 */
 		public static Status parse(String s){
-			if(s.equals("UNFINISHED") || s.equals("Unfinished")){
+			return parse(s,0,s.length());
+		}
+
+		/**
+		 * Parses a section of a sequence of characters and returns a Status, without copying the section
+		 * @param s the characters containing the Status
+		 * @param start index of the first character of the Status
+		 * @param end index after the last character of the Status
+		 * @return the Status if it can be parsed, null otherwise
+		 */
+		public static Status parse(CharSequence s,int start,int end){
+			if(Util.regionEquals(s,start,end,"UNFINISHED") || Util.regionEquals(s,start,end,"Unfinished")){
 				return UNFINISHED;
 			}
-			if(s.equals("FINISHED") || s.equals("Finished")){
+			if(Util.regionEquals(s,start,end,"FINISHED") || Util.regionEquals(s,start,end,"Finished")){
 				return FINISHED;
 			}
 			return null;
@@ -117,13 +129,24 @@ public class Item {
 		 * @return the Priority if it can be parsed, null otherwise
 		 */
 		public static Priority parse(String s){
-			if(s.equals("HIGH") || s.equals("High")){
+			return parse(s,0,s.length());
+		}
+
+		/**
+		 * Parses a section of a sequence of characters and returns a Priority, without copying the section
+		 * @param s the characters containing the Priority
+		 * @param start index of the first character of the Priority
+		 * @param end index after the last character of the Priority
+		 * @return the Priority if it can be parsed, null otherwise
+		 */
+		public static Priority parse(CharSequence s,int start,int end){
+			if(Util.regionEquals(s,start,end,"HIGH") || Util.regionEquals(s,start,end,"High")){
 				return HIGH;
 			}
-			if(s.equals("MEDIUM") || s.equals("Medium")){
+			if(Util.regionEquals(s,start,end,"MEDIUM") || Util.regionEquals(s,start,end,"Medium")){
 				return MEDIUM;
 			}
-			if(s.equals("LOW") || s.equals("Low")){
+			if(Util.regionEquals(s,start,end,"LOW") || Util.regionEquals(s,start,end,"Low")){
 				return LOW;
 			}
 			return null;
@@ -136,7 +159,9 @@ public class Item {
 	private String displayName;
 	private String description;
 	private Priority priority;
-	private Date date;
+	private long time;//creation time in milliseconds since the epoch
+	private long id;
+	private AlphanumComparator.Key nameKey;//built when first sorted by name, cleared when the name changes
 
 	/**
 	 * Checks a string for disallowed characters
@@ -176,6 +201,7 @@ public class Item {
 			Util.error("Attempting to set description with a disallowed character",Util.getFileName(),Util.getLineNumber());
 		}
 		this.displayName = displayName;
+		this.nameKey = null;
 	}
 
 	/**
@@ -183,7 +209,7 @@ public class Item {
 	 * @param description the given String
 	 */
 	public void setDescription(String description){
-		boolean safe = checkIfAllowed(displayName);
+		boolean safe = checkIfAllowed(description);
 		if(!safe){
 			Util.error("Attempting to set description with a disallowed character",Util.getFileName(),Util.getLineNumber());
 		}
@@ -218,7 +244,23 @@ public class Item {
 	 * @param date the given Date
 	 */
 	public void setDate(Date date){
-		this.date = date;
+		this.time = date.getTime();
+	}
+
+	/**
+	 * Sets the creation time
+	 * @param time milliseconds since the epoch
+	 */
+	public void setTime(long time){
+		this.time = time;
+	}
+
+	/**
+	 * Sets the ID the Database knows this Item by
+	 * @param id the given ID
+	 */
+	public void setId(long id){
+		this.id = id;
 	}
 
 	/**
@@ -229,6 +271,19 @@ public class Item {
 		return this.displayName;
 	}
 
+	/**
+	 * Returns the key used to sort the displayName in natural order, building it the first time it's needed
+	 * @return the sort key of the displayName
+	 */
+	public AlphanumComparator.Key getNameKey(){
+		AlphanumComparator.Key key = this.nameKey;
+		if(key == null){
+			key = new AlphanumComparator.Key(this.displayName);
+			this.nameKey = key;
+		}
+		return key;
+	}
+
 	/**
 	 * Returns the description
 	 * @return the description
@@ -254,11 +309,27 @@ public class Item {
 	}
 
 	/**
-	 * Returns the date
+	 * Returns the date as a new Date, so changing it doesn't change the Item
 	 * @return the date
 	 */
 	public Date getDate(){
-		return date;
+		return new Date(time);
+	}
+
+	/**
+	 * Returns the creation time
+	 * @return milliseconds since the epoch
+	 */
+	public long getTime(){
+		return time;
+	}
+
+	/**
+	 * Returns the ID the Database knows this Item by, which stays the same as Items are sorted, edited, and deleted
+	 * @return the ID, or 0 if the Item hasn't been added to a Database yet
+	 */
+	public long getId(){
+		return id;
 	}
 
 	/**
@@ -284,7 +355,7 @@ public class Item {
 		if(this.priority != b.priority){
 			return false;
 		}
-		if(!this.date.equals(b.date)){
+		if(this.time != b.time){
 			return false;
 		}
 		return true;
@@ -296,14 +367,14 @@ public class Item {
 	 */
 	@Override
 	public String toString(){
-		return "main.java.control.Item(displayName:" + this.displayName + " status:" + this.status + " priority:"+this.priority+" date:"+ this.date+ " description:" + this.description + ")";
+		return "main.java.control.Item(id:" + this.id + " displayName:" + this.displayName + " status:" + this.status + " priority:"+this.priority+" date:"+ getDate()+ " description:" + this.description + ")";
 	}
 
 	/**
 	 * Constructs a new Item with the default values
 	 */
 	public Item(){
-		this("","",Status.UNFINISHED,Priority.LOW,new Date());
+		this("","",Status.UNFINISHED,Priority.LOW,System.currentTimeMillis());
 	}
 
 	/**
@@ -312,7 +383,7 @@ public class Item {
 	 * @param description the initial description
 	 */
 	public Item(String displayName,String description){
-		this(displayName,description,Status.UNFINISHED,Priority.LOW,new Date());
+		this(displayName,description,Status.UNFINISHED,Priority.LOW,System.currentTimeMillis());
 	}
 
 	/**
@@ -322,7 +393,7 @@ public class Item {
 	 * @param priority the initial priority
 	 */
 	public Item(String displayName,String description,Priority priority){
-		this(displayName,description,Status.UNFINISHED,priority,new Date());
+		this(displayName,description,Status.UNFINISHED,priority,System.currentTimeMillis());
 	}
 
 	/**
@@ -334,12 +405,24 @@ public class Item {
 	 * @param date the initial date
 	 */
 	public Item(String displayName, String description, Status status, Priority priority, Date date){
+		this(displayName,description,status,priority,date.getTime());
+	}
+
+	/**
+	 * Constructs a new Item with all of the given values
+	 * @param displayName the initial name
+	 * @param description the initial description
+	 * @param status the initial  status
+	 * @param priority the initial priority
+	 * @param time the initial creation time in milliseconds since the epoch
+	 */
+	public Item(String displayName, String description, Status status, Priority priority, long time){
 		this.displayName = "";
 		setDisplayName(displayName);
-		this.description = "";
-		setDescription(description);
+		this.description = description;//not checked, since descriptions saved before "|" was disallowed in them can contain it
 		this.status = status;
 		this.priority = priority;
-		this.date = date;
+		this.time = time;
+		this.id = 0;
 	}
 }
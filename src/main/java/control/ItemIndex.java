@@ -0,0 +1,145 @@
+package main.java.control;
+
+import java.util.Arrays;
+
+/**
+ * Hash index from item IDs to their positions in the database's list.
+ *
+ * Uses open addressing with linear probing over parallel primitive arrays, so lookups don't box the IDs or
+ * allocate. ID 0 means an item hasn't been given an ID yet and is never stored.
+ *
+ * @author Adrian Hardt
+ */
+
+class ItemIndex {
+    public static final long NO_ID = 0;
+    public static final int NOT_FOUND = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long ids[];
+    private int positions[];
+    private int mask;
+    private int size;
+
+    /**
+     * Finds the slot an ID starts probing from
+     * @param id the ID
+     * @return the slot
+     */
+    private int home(long id){
+        long hash = id * 0x9E3779B97F4A7C15L;//Fibonacci hashing spreads sequential IDs across the table
+        return (int)(hash >>> 32) & mask;
+    }
+
+    /**
+     * Gets the position of an item
+     * @param id the item's ID
+     * @return its position, or NOT_FOUND
+     */
+    public int get(long id){
+        if(id == NO_ID){
+            return NOT_FOUND;
+        }
+        for(int slot = home(id); ids[slot] != NO_ID; slot = (slot + 1) & mask){
+            if(ids[slot] == id){
+                return positions[slot];
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Sets the position of an item, adding it if it isn't indexed yet
+     * @param id the item's ID
+     * @param position its position
+     */
+    public void put(long id, int position){
+        if(id == NO_ID){
+            return;
+        }
+        if((size + 1) * 2 > ids.length){
+            resize(ids.length * 2);
+        }
+        int slot = home(id);
+        while(ids[slot] != NO_ID && ids[slot] != id){
+            slot = (slot + 1) & mask;
+        }
+        if(ids[slot] == NO_ID){
+            ids[slot] = id;
+            size++;
+        }
+        positions[slot] = position;
+    }
+
+    /**
+     * Removes an item from the index
+     * @param id the item's ID
+     */
+    public void remove(long id){
+        if(id == NO_ID){
+            return;
+        }
+        int hole = home(id);
+        while(ids[hole] != id){
+            if(ids[hole] == NO_ID){
+                return;
+            }
+            hole = (hole + 1) & mask;
+        }
+        //shift later entries of the probe run back into the hole so lookups never stop early at it
+        for(int next = (hole + 1) & mask; ids[next] != NO_ID; next = (next + 1) & mask){
+            if(((next - home(ids[next])) & mask) >= ((next - hole) & mask)){
+                ids[hole] = ids[next];
+                positions[hole] = positions[next];
+                hole = next;
+            }
+        }
+        ids[hole] = NO_ID;
+        size--;
+    }
+
+    /**
+     * Removes every item from the index
+     */
+    public void clear(){
+        Arrays.fill(ids, NO_ID);
+        size = 0;
+    }
+
+    /**
+     * Gets the number of indexed items
+     * @return number of items
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Rebuilds the table with a new capacity
+     * @param capacity the new capacity, a power of two
+     */
+    private void resize(int capacity){
+        long oldIds[] = ids;
+        int oldPositions[] = positions;
+        ids = new long[capacity];
+        positions = new int[capacity];
+        mask = capacity - 1;
+        size = 0;
+        for(int i = 0; i < oldIds.length; i++){
+            if(oldIds[i] != NO_ID){
+                put(oldIds[i], oldPositions[i]);
+            }
+        }
+    }
+
+    /**
+     * Constructs an empty index
+     */
+    public ItemIndex(){
+        this.ids = new long[MIN_CAPACITY];
+        this.positions = new int[MIN_CAPACITY];
+        this.mask = MIN_CAPACITY - 1;
+        this.size = 0;
+    }
+}
@@ -0,0 +1,303 @@
+package main.java.control;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * List of items packed into parallel primitive arrays instead of one object per item.
+ *
+ * The status and priority of each item share one byte, the date and ID are kept as longs, and the name and
+ * description are copied next to each other into one shared character arena. Getting an item builds a new Item from
+ * these arrays, so changes to it aren't seen by the store until it is set back. Filters and counts can read the
+ * packed status, priority and date of an item without building it.
+ *
+ * Text which is replaced or removed stays in the arena as garbage until it makes up half of the arena, when the
+ * arena is rebuilt from the live text.
+ *
+ * @author Adrian Hardt
+ */
+
+public class ItemStore extends AbstractList<Item> implements RandomAccess {
+    private static final int MIN_CAPACITY = 16;
+    private static final int MIN_ARENA_CAPACITY = 1024;
+
+    private static final int PRIORITY_BITS = 2;
+    private static final int PRIORITY_MASK = (1 << PRIORITY_BITS) - 1;
+
+    private static final Item.Status STATUSES[] = Item.Status.values();
+    private static final Item.Priority PRIORITIES[] = Item.Priority.values();
+
+    private byte flags[];
+    private long dates[];
+    private long ids[];
+    private int textStarts[];//start of the name in the arena
+    private int descriptionStarts[];//end of the name and start of the description
+    private int textEnds[];//end of the description
+    private int size;
+
+    private char arena[];
+    private int arenaLength;
+    private int garbage;//characters in the arena which no item uses
+
+    /**
+     * Gets the number of items
+     * @return number of items
+     */
+    @Override
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Builds an item from its packed fields
+     * @param index index of the item
+     * @return a new Item holding the item's fields
+     */
+    @Override
+    public Item get(int index){
+        checkIndex(index, size);
+        Item out = new Item(getDisplayName(index), getDescription(index), getStatus(index), getPriority(index), dates[index]);
+        out.setId(ids[index]);
+        return out;
+    }
+
+    /**
+     * Replaces an item
+     * @param index index of the item
+     * @param element the replacement
+     * @return the item which was replaced
+     */
+    @Override
+    public Item set(int index, Item element){
+        Item old = get(index);
+        garbage += textEnds[index] - textStarts[index];
+        pack(index, element);
+        compactIfWasteful();
+        return old;
+    }
+
+    /**
+     * Inserts an item, moving the items after it back
+     * @param index where to insert the item
+     * @param element the item
+     */
+    @Override
+    public void add(int index, Item element){
+        checkIndex(index, size + 1);
+        if(size == flags.length){
+            grow();
+        }
+        int moved = size - index;
+        System.arraycopy(flags, index, flags, index + 1, moved);
+        System.arraycopy(dates, index, dates, index + 1, moved);
+        System.arraycopy(ids, index, ids, index + 1, moved);
+        System.arraycopy(textStarts, index, textStarts, index + 1, moved);
+        System.arraycopy(descriptionStarts, index, descriptionStarts, index + 1, moved);
+        System.arraycopy(textEnds, index, textEnds, index + 1, moved);
+        size++;
+        modCount++;
+        pack(index, element);
+    }
+
+    /**
+     * Removes an item, moving the items after it forward
+     * @param index index of the item
+     * @return the item which was removed
+     */
+    @Override
+    public Item remove(int index){
+        Item old = get(index);
+        garbage += textEnds[index] - textStarts[index];
+        int moved = size - index - 1;
+        System.arraycopy(flags, index + 1, flags, index, moved);
+        System.arraycopy(dates, index + 1, dates, index, moved);
+        System.arraycopy(ids, index + 1, ids, index, moved);
+        System.arraycopy(textStarts, index + 1, textStarts, index, moved);
+        System.arraycopy(descriptionStarts, index + 1, descriptionStarts, index, moved);
+        System.arraycopy(textEnds, index + 1, textEnds, index, moved);
+        size--;
+        modCount++;
+        compactIfWasteful();
+        return old;
+    }
+
+    /**
+     * Removes every item and all of the text
+     */
+    @Override
+    public void clear(){
+        size = 0;
+        arenaLength = 0;
+        garbage = 0;
+        modCount++;
+    }
+
+    /**
+     * Gets the status of an item without building it
+     * @param index index of the item
+     * @return the status
+     */
+    public Item.Status getStatus(int index){
+        checkIndex(index, size);
+        return STATUSES[flags[index] >> PRIORITY_BITS];
+    }
+
+    /**
+     * Gets the priority of an item without building it
+     * @param index index of the item
+     * @return the priority
+     */
+    public Item.Priority getPriority(int index){
+        checkIndex(index, size);
+        return PRIORITIES[flags[index] & PRIORITY_MASK];
+    }
+
+    /**
+     * Gets the date of an item without building it
+     * @param index index of the item
+     * @return milliseconds since the epoch
+     */
+    public long getTime(int index){
+        checkIndex(index, size);
+        return dates[index];
+    }
+
+    /**
+     * Gets the ID of an item without building it
+     * @param index index of the item
+     * @return the ID
+     */
+    public long getId(int index){
+        checkIndex(index, size);
+        return ids[index];
+    }
+
+    /**
+     * Gets the name of an item
+     * @param index index of the item
+     * @return the name
+     */
+    public String getDisplayName(int index){
+        checkIndex(index, size);
+        return new String(arena, textStarts[index], descriptionStarts[index] - textStarts[index]);
+    }
+
+    /**
+     * Gets the description of an item
+     * @param index index of the item
+     * @return the description
+     */
+    public String getDescription(int index){
+        checkIndex(index, size);
+        return new String(arena, descriptionStarts[index], textEnds[index] - descriptionStarts[index]);
+    }
+
+    /**
+     * Writes an item's fields into a slot, appending its text to the arena
+     * @param index index of the slot
+     * @param element the item
+     */
+    private void pack(int index, Item element){
+        String name = element.getDisplayName(), description = element.getDescription();
+        textStarts[index] = descriptionStarts[index] = textEnds[index] = 0;//the slot's old text is garbage, so don't let a compaction keep it
+        ensureArenaCapacity(arenaLength + name.length() + description.length());
+        flags[index] = (byte)(element.getStatus().ordinal() << PRIORITY_BITS | element.getPriority().ordinal());
+        dates[index] = element.getTime();
+        ids[index] = element.getId();
+        textStarts[index] = arenaLength;
+        name.getChars(0, name.length(), arena, arenaLength);
+        arenaLength += name.length();
+        descriptionStarts[index] = arenaLength;
+        description.getChars(0, description.length(), arena, arenaLength);
+        arenaLength += description.length();
+        textEnds[index] = arenaLength;
+    }
+
+    /**
+     * Grows the arrays of fields to fit more items
+     */
+    private void grow(){
+        int capacity = flags.length + (flags.length >> 1);
+        flags = Arrays.copyOf(flags, capacity);
+        dates = Arrays.copyOf(dates, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        textStarts = Arrays.copyOf(textStarts, capacity);
+        descriptionStarts = Arrays.copyOf(descriptionStarts, capacity);
+        textEnds = Arrays.copyOf(textEnds, capacity);
+    }
+
+    /**
+     * Grows the arena to fit more text, dropping the garbage first if that makes enough room
+     * @param needed number of characters the arena must hold
+     */
+    private void ensureArenaCapacity(int needed){
+        if(needed < 0){
+            throw new OutOfMemoryError("Item text doesn't fit in one arena");
+        }
+        if(needed <= arena.length){
+            return;
+        }
+        if(needed - garbage <= arena.length / 2){
+            compact(arena.length);
+            return;
+        }
+        arena = Arrays.copyOf(arena, Math.max(needed, arena.length + (arena.length >> 1)));
+    }
+
+    /**
+     * Rebuilds the arena from the live text once at least half of it is garbage
+     */
+    private void compactIfWasteful(){
+        if(arenaLength > MIN_ARENA_CAPACITY && garbage > arenaLength / 2){
+            compact(Math.max(MIN_ARENA_CAPACITY, (arenaLength - garbage) * 2));
+        }
+    }
+
+    /**
+     * Copies the live text of every item, in item order, into a new arena
+     * @param capacity size of the new arena
+     */
+    private void compact(int capacity){
+        char packed[] = new char[capacity];
+        int length = 0;
+        for(int i = 0; i < size; i++){
+            int textLength = textEnds[i] - textStarts[i];
+            System.arraycopy(arena, textStarts[i], packed, length, textLength);
+            descriptionStarts[i] += length - textStarts[i];
+            textStarts[i] = length;
+            length += textLength;
+            textEnds[i] = length;
+        }
+        arena = packed;
+        arenaLength = length;
+        garbage = 0;
+    }
+
+    /**
+     * Checks that an index is in range
+     * @param index the index
+     * @param limit one past the largest allowed index
+     */
+    private static void checkIndex(int index, int limit){
+        if(index < 0 || index >= limit){
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+    }
+
+    /**
+     * Constructs an empty store
+     */
+    public ItemStore(){
+        this.flags = new byte[MIN_CAPACITY];
+        this.dates = new long[MIN_CAPACITY];
+        this.ids = new long[MIN_CAPACITY];
+        this.textStarts = new int[MIN_CAPACITY];
+        this.descriptionStarts = new int[MIN_CAPACITY];
+        this.textEnds = new int[MIN_CAPACITY];
+        this.size = 0;
+        this.arena = new char[MIN_ARENA_CAPACITY];
+        this.arenaLength = 0;
+        this.garbage = 0;
+    }
+}
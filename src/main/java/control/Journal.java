@@ -0,0 +1,421 @@
+package main.java.control;
+
+import static java.nio.file.StandardOpenOption.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Append-only log of the changes made to the database since it was last written out in full.
+ *
+ * Each record is one line: an operation character, then its arguments separated by "|". The log is split into
+ * numbered segments, "database.journal.1", "database.journal.2" and so on, after a journal without a number from
+ * before there were segments. Records are appended to the last segment, which is kept open, and a new segment is
+ * started once it is full or when a snapshot is taken, so the records a snapshot covers are dropped by deleting whole
+ * segments rather than copying the rest.
+ *
+ * Appending doesn't force records to disk. Each record is given a sequence number and sync forces everything
+ * appended so far, so a record is safe once sync has been called with its number or a later one, and records appended
+ * by several threads while one sync is running share the next one. A full segment is always forced when it is closed,
+ * so only the last segment can be left with a record cut off partway by a crash, which recover drops.
+ *
+ * Callers hold one lock around every method except sync and isSynced.
+ *
+ * @author Adrian Hardt
+ */
+
+class Journal {
+    public static final char ADD = 'A';
+    public static final char EDIT = 'E';
+    public static final char DELETE = 'D';
+
+    public static final long SEGMENT_SIZE = 1 << 22;//bytes in a segment before the next one is started
+
+    private final Path path;
+    private final Object syncLock = new Object();//guards forcing and closing the open segment
+    private boolean forcing;//true while a thread is forcing the open segment
+    private volatile FileChannel current;//the segment being appended to, or null if it hasn't been opened
+    private long currentNumber;
+    private long currentSize;
+    private int records;
+    private volatile long appended;//sequence number of the last record appended
+    private volatile long synced;//sequence number of the last record forced to disk
+    private long syncs;//number of times records have been forced
+
+    /**
+     * Gets the path of a segment
+     * @param number the segment's number, or 0 for the journal from before there were segments
+     * @return the path
+     */
+    private Path segmentPath(long number){
+        return (number == 0) ? path : path.resolveSibling(path.getFileName() + "." + number);
+    }
+
+    /**
+     * Finds every segment on disk
+     * @return the segments' paths by number, in order
+     */
+    private TreeMap<Long,Path> segments(){
+        TreeMap<Long,Path> out = new TreeMap<>();
+        Path directory = path.toAbsolutePath().getParent();
+        if(directory == null || !Files.isDirectory(directory)){
+            return out;
+        }
+        String name = path.getFileName().toString();
+        try (DirectoryStream<Path> siblings = Files.newDirectoryStream(directory, name + "*")) {
+            for(Path sibling: siblings){
+                String suffix = sibling.getFileName().toString().substring(name.length());
+                if(suffix.isEmpty()){
+                    out.put(0L, segmentPath(0));
+                }
+                else if(suffix.matches("\\.\\d{1,18}")){
+                    long number = Long.parseLong(suffix.substring(1));
+                    out.put(number, segmentPath(number));
+                }
+            }
+        }
+        catch (IOException x){
+            x.printStackTrace(new PrintStream(System.out));
+        }
+        return out;
+    }
+
+    /**
+     * Opens the last segment to append to, or starts the first one
+     * @throws IOException Failure
+     */
+    private void open() throws IOException{
+        TreeMap<Long,Path> all = segments();
+        long number = all.isEmpty() ? 1 : all.lastKey();
+        Path segment = segmentPath(number);
+        boolean created = !Files.exists(segment);
+        FileChannel channel = FileChannel.open(segment, CREATE, WRITE, APPEND);
+        if(created){
+            SafeFiles.syncDirectory(segment);
+        }
+        currentNumber = number;
+        currentSize = channel.size();
+        current = channel;
+    }
+
+    /**
+     * Forces and closes the open segment
+     * @param force false if the segment is about to be deleted
+     * @throws IOException Failure
+     */
+    private void closeCurrent(boolean force) throws IOException{
+        synchronized (syncLock) {
+            awaitForce(Long.MAX_VALUE);
+            FileChannel channel = current;
+            if(channel == null){
+                return;
+            }
+            current = null;
+            try {
+                if(force){
+                    channel.force(false);
+                    syncs++;
+                }
+            }
+            finally {
+                channel.close();
+            }
+            synced = appended;
+        }
+    }
+
+    /**
+     * Appends a batch of records to the end of the journal in one write. The records aren't safe until they're synced.
+     * @param batch the records, in order, without newlines
+     * @return sequence number of the last record in the batch
+     * @throws IOException if the records couldn't be written
+     */
+    public long append(List<String> batch) throws IOException{
+        if(batch.isEmpty()){
+            return appended;
+        }
+        StringBuilder text = new StringBuilder();
+        for(String record: batch){
+            text.append(record).append('\n');
+        }
+        byte data[] = text.toString().getBytes(StandardCharsets.UTF_8);
+        if(current != null && currentSize > 0 && currentSize + data.length > SEGMENT_SIZE){
+            roll();
+        }
+        if(current == null){
+            open();
+        }
+        try {
+            SafeFiles.writeFully(current, ByteBuffer.wrap(data));
+        }
+        catch (IOException x){
+            try {
+                current.truncate(currentSize);//so the batch can be appended again without a half-written record before it
+            }
+            catch (IOException a){
+                //recover drops a half-written record at the end, and the next batch starts after it
+            }
+            throw x;
+        }
+        currentSize += data.length;
+        records += batch.size();
+        appended += batch.size();
+        return appended;
+    }
+
+    /**
+     * Forces every record appended so far to disk, unless the record with a sequence number has been already. Threads
+     * which call this while another thread is forcing wait for it and then share one force between them.
+     * @param sequence sequence number of the last record which has to be safe
+     * @throws IOException if the records couldn't be forced
+     */
+    public void sync(long sequence) throws IOException{
+        FileChannel channel;
+        long target;
+        synchronized (syncLock) {
+            awaitForce(sequence);
+            channel = current;
+            if(synced >= sequence || channel == null){//a closed segment was forced when it was closed
+                return;
+            }
+            forcing = true;
+            target = appended;//everything up to here has been written to the channel
+        }
+        boolean forced = false;
+        try {
+            channel.force(false);//outside the lock, so the threads appending meanwhile can wait for the next force
+            forced = true;
+        }
+        finally {
+            synchronized (syncLock) {
+                forcing = false;
+                if(forced){
+                    syncs++;
+                    synced = Math.max(synced, target);
+                }
+                syncLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits while a force is in progress, until it covers a record or finishes. Called holding syncLock.
+     * @param sequence sequence number of the record, or Long.MAX_VALUE to wait for the force to finish
+     */
+    private void awaitForce(long sequence){
+        boolean interrupted = false;
+        while(forcing && synced < sequence){
+            try {
+                syncLock.wait();
+            }
+            catch (InterruptedException a){
+                interrupted = true;//the record still has to be forced, so keep waiting and pass the interrupt on after
+            }
+        }
+        if(interrupted){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Checks whether a record has been forced to disk
+     * @param sequence the record's sequence number
+     * @return true if it is safe
+     */
+    public boolean isSynced(long sequence){
+        return synced >= sequence;
+    }
+
+    /**
+     * Gets the sequence number of the last record appended
+     * @return the sequence number, which is 0 before the first append
+     */
+    public long getAppended(){
+        return appended;
+    }
+
+    /**
+     * Gets the number of times records have been forced to disk, to measure how many records share each force
+     * @return number of forces
+     */
+    public long getSyncs(){
+        synchronized (syncLock) {
+            return syncs;
+        }
+    }
+
+    /**
+     * Closes the open segment, forcing it to disk, and starts the next one
+     * @return number of the new segment, which holds every record appended after this
+     * @throws IOException if the new segment couldn't be created
+     */
+    public long roll() throws IOException{
+        long next;
+        synchronized (syncLock) {
+            if(current != null){
+                next = currentNumber + 1;
+                closeCurrent(true);
+            }
+            else{
+                TreeMap<Long,Path> all = segments();
+                next = all.isEmpty() ? 1 : all.lastKey() + 1;
+            }
+            Path segment = segmentPath(next);
+            FileChannel channel = FileChannel.open(segment, CREATE, WRITE, APPEND);
+            SafeFiles.syncDirectory(segment);
+            currentNumber = next;
+            currentSize = channel.size();
+            current = channel;
+        }
+        return next;
+    }
+
+    /**
+     * Reads every record in the journal
+     * @return the records in the order they were appended
+     */
+    public ArrayList<String> read(){
+        ArrayList<String> out = new ArrayList<>();
+        for(Path segment: segments().values()){
+            try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                String line = reader.readLine();
+                while (line != null){
+                    if(!line.isEmpty()){
+                        out.add(line);
+                    }
+                    line = reader.readLine();
+                }
+            }
+            catch (IOException x){
+                x.printStackTrace(new PrintStream(System.out));
+            }
+        }
+        records = out.size();
+        return out;
+    }
+
+    /**
+     * Drops records left without their newline by a crash partway through an append. The records' changes were never
+     * reported as saved, so they're lost rather than read back half written. Only runs before the first append.
+     * @return true if a record was dropped
+     */
+    public boolean recover(){
+        boolean dropped = false;
+        for(Path segment: segments().values()){
+            try (FileChannel channel = FileChannel.open(segment, READ, WRITE)) {
+                long size = channel.size();
+                if(size == 0){
+                    continue;
+                }
+                ByteBuffer last = ByteBuffer.allocate(1);
+                channel.read(last, size - 1);
+                if(last.get(0) == '\n'){
+                    continue;
+                }
+                channel.truncate(SafeFiles.lastLineStart(channel, size));
+                channel.force(true);
+                dropped = true;
+            }
+            catch (IOException x){
+                x.printStackTrace(new PrintStream(System.out));
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Checks whether any segment on disk holds records, without reading them
+     * @return true if every segment is empty or there are none
+     */
+    public boolean isEmpty(){
+        for(Path segment: segments().values()){
+            try {
+                if(Files.size(segment) > 0){
+                    return false;
+                }
+            }
+            catch (IOException x){
+                return false;//can't tell, so assume it holds records
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of records in the journal
+     * @return number of records
+     */
+    public int size(){
+        return records;
+    }
+
+    /**
+     * Removes the segments before a mark, keeping every record appended after it
+     * @param mark number of the segment roll started when the snapshot that replaces those records was taken
+     */
+    public void dropBefore(long mark){
+        int kept = 0;
+        for(Map.Entry<Long,Path> segment: segments().entrySet()){
+            try {
+                if(segment.getKey() < mark){
+                    Files.deleteIfExists(segment.getValue());
+                }
+                else{
+                    byte all[] = Files.readAllBytes(segment.getValue());
+                    for(byte b: all){
+                        if(b == '\n'){
+                            kept++;
+                        }
+                    }
+                }
+            }
+            catch (IOException x){
+                x.printStackTrace(new PrintStream(System.out));
+            }
+        }
+        SafeFiles.syncDirectory(path);
+        records = kept;
+    }
+
+    /**
+     * Removes every record from the journal
+     */
+    public void clear(){
+        try {
+            closeCurrent(false);
+        }
+        catch (IOException x){
+            x.printStackTrace(new PrintStream(System.out));
+        }
+        boolean deleted = false;
+        for(Path segment: segments().values()){
+            try {
+                deleted |= Files.deleteIfExists(segment);
+            }
+            catch (IOException x){
+                x.printStackTrace(new PrintStream(System.out));
+            }
+        }
+        if(deleted){
+            SafeFiles.syncDirectory(path);
+        }
+        records = 0;
+    }
+
+    /**
+     * Constructs a journal stored at the given path
+     * @param fileName path of the journal, which segments are numbered after
+     */
+    public Journal(String fileName){
+        this.path = Paths.get(fileName);
+        this.records = 0;
+        this.appended = 0;
+        this.synced = 0;
+    }
+}
@@ -0,0 +1,160 @@
+package main.java.control;
+
+import java.io.PrintStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searches a SearchIndex as a query is typed, off the thread doing the typing.
+ *
+ * Each change to the query waits for a short pause in typing before it is searched, and replaces any change still
+ * waiting, so a burst of keystrokes costs one search. Searches run on a background thread and each one narrows down
+ * the results of the one before it when it can. Results are handed to the listener through an Executor, such as the
+ * UI thread's, and results of queries which have since been changed again are dropped rather than shown.
+ *
+ * @author Adrian Hardt
+ */
+
+public class LiveSearch {
+    public static final long DEFAULT_DELAY = 150;//ms
+    public static final int DEFAULT_LIMIT = 1000;//best matches shown, so a query matching every item stays quick to search and show
+
+    /**
+     * Receives the results of each search which is still current
+     */
+    public interface ResultListener{
+        /**
+         * Called through the publisher when a search finishes and its query hasn't been changed since
+         * @param results the best matches
+         */
+        void resultsFound(SearchIndex.Results results);
+    }
+
+    private static final ScheduledExecutorService searcher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final SearchIndex index;
+    private final long delay;
+    private final Executor publisher;
+    private final ResultListener listener;
+    private final boolean misspellings;
+    private final int limit;
+
+    private ScheduledFuture<?> pending;
+    private int generation;//counts the queries asked for, so only the results of the latest are published
+    private SearchIndex.Results last;//only used on the searcher
+
+    /**
+     * Searches for a query once typing pauses, replacing any search still waiting
+     * @param query the query as typed so far
+     * @param filter the FilterMode matches must pass
+     */
+    public synchronized void update(String query, Analytics.FilterMode filter){
+        schedule(query, filter, delay, false);
+    }
+
+    /**
+     * Searches for a query straight away from scratch, such as after the items have changed
+     * @param query the query
+     * @param filter the FilterMode matches must pass
+     */
+    public synchronized void refresh(String query, Analytics.FilterMode filter){
+        schedule(query, filter, 0, true);
+    }
+
+    /**
+     * Drops any search still waiting and any results not yet published
+     */
+    public synchronized void cancel(){
+        generation++;
+        if(pending != null){
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    /**
+     * Replaces the waiting search with a new one
+     * @param query the query
+     * @param filter the FilterMode matches must pass
+     * @param wait ms to wait before searching
+     * @param fromScratch true to search every item rather than narrowing down the last results
+     */
+    private void schedule(String query, Analytics.FilterMode filter, long wait, boolean fromScratch){
+        cancel();
+        final int GENERATION = generation;
+        pending = searcher.schedule(() -> search(query, filter, fromScratch, GENERATION), wait, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Searches on the searcher and publishes the results if the query is still current
+     * @param query the query
+     * @param filter the FilterMode matches must pass
+     * @param fromScratch true to search every item rather than narrowing down the last results
+     * @param searchGeneration the generation of the query
+     */
+    private void search(String query, Analytics.FilterMode filter, boolean fromScratch, int searchGeneration){
+        if(!isCurrent(searchGeneration)){
+            return;
+        }
+        SearchIndex.Results results;
+        try {
+            results = index.find(query, filter, misspellings, limit, fromScratch ? null : last);
+        }
+        catch (RuntimeException a){
+            a.printStackTrace(new PrintStream(System.out));
+            return;
+        }
+        last = results;
+        publisher.execute(() -> {
+            if(isCurrent(searchGeneration)){
+                listener.resultsFound(results);
+            }
+        });
+    }
+
+    /**
+     * Checks whether a query is still the latest one asked for
+     * @param searchGeneration the generation of the query
+     * @return true if it is the latest
+     */
+    private synchronized boolean isCurrent(int searchGeneration){
+        return searchGeneration == generation;
+    }
+
+    /**
+     * Constructs a search which waits for the default pause in typing, keeps the default number of best matches and
+     * matches misspelled words
+     * @param index the index to search
+     * @param publisher runs the listener, such as on the UI thread
+     * @param listener receives the results
+     */
+    public LiveSearch(SearchIndex index, Executor publisher, ResultListener listener){
+        this(index, DEFAULT_DELAY, DEFAULT_LIMIT, true, publisher, listener);
+    }
+
+    /**
+     * Constructs a search
+     * @param index the index to search
+     * @param delay ms of pause in typing to wait for before searching
+     * @param limit largest number of best matches to keep, or Analytics.NO_LIMIT
+     * @param misspellings true to match words which could be misspelled
+     * @param publisher runs the listener, such as on the UI thread
+     * @param listener receives the results
+     */
+    public LiveSearch(SearchIndex index, long delay, int limit, boolean misspellings, Executor publisher, ResultListener listener){
+        this.index = index;
+        this.delay = delay;
+        this.limit = limit;
+        this.misspellings = misspellings;
+        this.publisher = publisher;
+        this.listener = listener;
+        this.generation = 0;
+    }
+}
@@ -0,0 +1,77 @@
+package main.java.control;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Presents UTF-8 bytes of the database file, such as a memory-mapped window, as characters without decoding them up front.
+ *
+ * The delimiters and the status, priority and date fields of the database are ASCII, so charAt returns each byte as a
+ * character. Names and descriptions are taken with subSequence, which decodes just those bytes as UTF-8.
+ *
+ * @author Adrian Hardt
+ */
+
+class MappedText implements CharSequence {
+    private final ByteBuffer bytes;
+    private final ByteBuffer reader;
+    private final int length;
+    private byte scratch[];
+
+    /**
+     * Gets the number of bytes covered
+     * @return length in bytes
+     */
+    @Override
+    public int length(){
+        return length;
+    }
+
+    /**
+     * Gets a byte as a character, which is only meaningful for ASCII bytes
+     * @param index index of the byte
+     * @return the byte as a character
+     */
+    @Override
+    public char charAt(int index){
+        return (char)(bytes.get(index) & 0xFF);
+    }
+
+    /**
+     * Decodes a range of bytes
+     * @param start index of the first byte
+     * @param end index after the last byte
+     * @return the decoded String
+     */
+    @Override
+    public CharSequence subSequence(int start, int end){
+        int count = end - start;
+        if(scratch == null || scratch.length < count){
+            scratch = new byte[Math.max(count, 256)];
+        }
+        reader.limit(end);
+        reader.position(start);
+        reader.get(scratch, 0, count);
+        return new String(scratch, 0, count, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes every byte covered
+     * @return the decoded String
+     */
+    @Override
+    public String toString(){
+        return subSequence(0, length).toString();
+    }
+
+    /**
+     * Constructs a view over the start of a buffer
+     * @param bytes buffer holding the text, read with absolute indexes from 0
+     * @param length number of bytes to cover
+     */
+    public MappedText(ByteBuffer bytes, int length){
+        this.bytes = bytes;
+        this.reader = bytes.duplicate();
+        this.length = length;
+    }
+}
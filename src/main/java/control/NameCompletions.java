@@ -0,0 +1,370 @@
+package main.java.control;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Suggests item names which start with what has been typed, best first.
+ *
+ * Names are kept in a radix trie, compared without case, where each edge holds a run of characters rather than one.
+ * Every node caches the best few names below it, so a completion is a walk down the typed prefix and a copy of one
+ * cached list. Adding, renaming or deleting an item only marks the path from the root to its name as changed, and the
+ * caches of the changed nodes are rebuilt from their children's in one pass after each change or batch of changes.
+ *
+ * Names are ranked by how often and how recently they're used: each item with a name adds a weight which doubles
+ * every HALF_LIFE of its date, so a name used many times long ago can be passed by one used a few times lately.
+ *
+ * @author Adrian Hardt
+ */
+
+public class NameCompletions implements Database.Listener {
+    public static final int MAX_SUGGESTIONS = 8;
+    public static final long HALF_LIFE = 30L * 24 * 60 * 60 * 1000;//ms
+
+    /**
+     * A name along with how much it has been used
+     */
+    private static class Completion{
+        private final String key;
+        private String name;//as it was last typed
+        private int count;
+        private double weight;
+
+        private Completion(String key){
+            this.key = key;
+        }
+    }
+
+    /**
+     * A node of the trie, reached by the characters of its edge after those of its parent
+     */
+    private static class Node{
+        private String edge;
+        private Node parent;
+        private ArrayList<Node> children = new ArrayList<>(0);//sorted by the first character of their edges
+        private Completion completion;//the name ending here, or null
+        private Completion best[] = new Completion[0];//the best names at or below this node, best first
+        private boolean changed;//true if the best names need to be rebuilt
+
+        private Node(String edge, Node parent){
+            this.edge = edge;
+            this.parent = parent;
+        }
+
+        /**
+         * Finds the child whose edge starts with a character
+         * @param first the character
+         * @return the child's index, or -(insertion point + 1) if there is none
+         */
+        private int child(char first){
+            int low = 0, high = children.size() - 1;
+            while(low <= high){
+                int middle = (low + high) >>> 1;
+                char at = children.get(middle).edge.charAt(0);
+                if(at < first){
+                    low = middle + 1;
+                }
+                else if(at > first){
+                    high = middle - 1;
+                }
+                else{
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+
+    /**
+     * The name and date of an item, as last counted
+     */
+    private static class Use{
+        private final String name;
+        private final long time;
+
+        private Use(String name, long time){
+            this.name = name;
+            this.time = time;
+        }
+    }
+
+    private static final Comparator<Completion> RANKING = Comparator.comparingDouble((Completion a) -> -a.weight).thenComparingInt((Completion a) -> -a.count).thenComparing((Completion a) -> a.key);
+
+    private final Database database;
+    private final long epoch;//dates are weighted relative to this so the weights stay in range
+    private final HashMap<Long,Use> uses;
+    private Node root;
+
+    /**
+     * Gets the form of a name which is compared
+     * @param name the name
+     * @return the name without surrounding spaces, in lowercase
+     */
+    private static String key(String name){
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Gets how much using a name on a date counts
+     * @param time milliseconds since the epoch
+     * @return the weight
+     */
+    private double weight(long time){
+        return Math.pow(2, (double)(time - epoch) / HALF_LIFE);
+    }
+
+    /**
+     * Finds the node of a name, adding nodes and splitting edges as needed
+     * @param key the compared form of the name
+     * @return the node
+     */
+    private Node nodeOf(String key){
+        Node node = root;
+        int at = 0;
+        while(at < key.length()){
+            int index = node.child(key.charAt(at));
+            if(index < 0){
+                Node leaf = new Node(key.substring(at), node);
+                node.children.add(-(index + 1), leaf);
+                return leaf;
+            }
+            Node child = node.children.get(index);
+            int common = 1;
+            while(common < child.edge.length() && at + common < key.length() && child.edge.charAt(common) == key.charAt(at + common)){
+                common++;
+            }
+            if(common < child.edge.length()){//the name ends or branches off partway along the edge, so split it there
+                Node middle = new Node(child.edge.substring(0, common), node);
+                child.edge = child.edge.substring(common);
+                child.parent = middle;
+                middle.children.add(child);
+                node.children.set(index, middle);
+                child = middle;
+            }
+            node = child;
+            at += common;
+        }
+        return node;
+    }
+
+    /**
+     * Finds the node of a name without changing the trie
+     * @param key the compared form of the name
+     * @return the node, or null if the name isn't in the trie
+     */
+    private Node find(String key){
+        Node node = root;
+        int at = 0;
+        while(at < key.length()){
+            int index = node.child(key.charAt(at));
+            if(index < 0){
+                return null;
+            }
+            node = node.children.get(index);
+            if(!key.startsWith(node.edge, at)){
+                return null;
+            }
+            at += node.edge.length();
+        }
+        return node;
+    }
+
+    /**
+     * Marks a node and every node above it as changed
+     * @param node the lowest node which changed
+     */
+    private static void mark(Node node){
+        for(; node != null && !node.changed; node = node.parent){
+            node.changed = true;
+        }
+    }
+
+    /**
+     * Rebuilds the best names of the changed nodes, children before parents, and removes nodes which no longer lead
+     * to a name
+     * @param node the node to start from
+     */
+    private void rebuild(Node node){
+        if(!node.changed){
+            return;
+        }
+        node.changed = false;
+        ArrayList<Completion> candidates = new ArrayList<>();
+        if(node.completion != null){
+            candidates.add(node.completion);
+        }
+        for(int i = node.children.size() - 1; i >= 0; i--){
+            Node child = node.children.get(i);
+            rebuild(child);
+            if(child.completion == null && child.children.isEmpty()){
+                node.children.remove(i);
+                continue;
+            }
+            candidates.addAll(Arrays.asList(child.best));
+        }
+        candidates.sort(RANKING);
+        node.best = candidates.subList(0, Math.min(MAX_SUGGESTIONS, candidates.size())).toArray(new Completion[0]);
+    }
+
+    /**
+     * Counts an item's use of its name
+     * @param a the item
+     */
+    private void count(Item a){
+        String key = key(a.getDisplayName());
+        if(key.isEmpty()){
+            return;
+        }
+        uses.put(a.getId(), new Use(a.getDisplayName().trim(), a.getTime()));
+        Node node = nodeOf(key);
+        if(node.completion == null){
+            node.completion = new Completion(key);
+        }
+        node.completion.name = a.getDisplayName().trim();
+        node.completion.count++;
+        node.completion.weight += weight(a.getTime());
+        mark(node);
+    }
+
+    /**
+     * Stops counting an item's use of the name it had
+     * @param id the item's ID
+     */
+    private void uncount(long id){
+        Use use = uses.remove(id);
+        if(use == null){
+            return;
+        }
+        Node node = find(key(use.name));
+        if(node == null || node.completion == null){
+            return;
+        }
+        node.completion.count--;
+        node.completion.weight -= weight(use.time);
+        if(node.completion.count == 0){
+            node.completion = null;
+        }
+        mark(node);
+    }
+
+    /**
+     * Suggests names which start with what has been typed
+     * @param prefix what has been typed
+     * @param limit largest number of names to suggest, at most MAX_SUGGESTIONS
+     * @return the names, best first, as they were last typed
+     */
+    public ArrayList<String> complete(String prefix, int limit){
+        synchronized (database) {
+            ArrayList<String> out = new ArrayList<>();
+            String key = prefix.toLowerCase(Locale.ROOT);
+            int start = 0;
+            while(start < key.length() && key.charAt(start) <= ' '){//spaces typed at the end are kept, since they end a word
+                start++;
+            }
+            key = key.substring(start);
+            Node node = root;
+            int at = 0;
+            while(at < key.length()){
+                int index = node.child(key.charAt(at));
+                if(index < 0){
+                    return out;
+                }
+                node = node.children.get(index);
+                int length = Math.min(node.edge.length(), key.length() - at);
+                if(!node.edge.regionMatches(0, key, at, length)){
+                    return out;
+                }
+                at += length;
+            }
+            for(int i = 0; i < node.best.length && i < limit; i++){
+                out.add(node.best[i].name);
+            }
+            return out;
+        }
+    }
+
+    /**
+     * Counts a new item's name
+     * @param item the new item
+     */
+    @Override
+    public void itemAdded(Item item){
+        count(item);
+        rebuild(root);
+    }
+
+    /**
+     * Counts a batch of new items' names, rebuilding the best names once for the whole batch
+     * @param added the new items
+     */
+    @Override
+    public void itemsAdded(List<Item> added){
+        for(Item a: added){
+            count(a);
+        }
+        rebuild(root);
+    }
+
+    /**
+     * Moves an edited item's count to its new name, if it was renamed
+     * @param item the item as it is now
+     */
+    @Override
+    public void itemEdited(Item item){
+        Use use = uses.get(item.getId());
+        if(use != null && use.name.equals(item.getDisplayName().trim()) && use.time == item.getTime()){//only the status, priority or description changed
+            return;
+        }
+        uncount(item.getId());
+        count(item);
+        rebuild(root);
+    }
+
+    /**
+     * Stops counting a deleted item's name
+     * @param item the deleted item
+     */
+    @Override
+    public void itemDeleted(Item item){
+        uncount(item.getId());
+        rebuild(root);
+    }
+
+    /**
+     * Counts every name again
+     */
+    @Override
+    public void itemsReloaded(){
+        synchronized (database) {
+            root = new Node("", null);
+            uses.clear();
+            itemsAdded(database.getItems());
+        }
+    }
+
+    /**
+     * Stops keeping the suggestions up to date
+     */
+    public void close(){
+        database.removeListener(this);
+    }
+
+    /**
+     * Constructs the suggestions for a database's names and subscribes them to the database's changes
+     * @param database the database whose names to suggest
+     */
+    public NameCompletions(Database database){
+        this.database = database;
+        this.epoch = System.currentTimeMillis();
+        this.uses = new HashMap<>();
+        this.root = new Node("", null);
+        synchronized (database) {
+            itemsReloaded();
+            database.addListener(this);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package main.java.control;
+
+import static java.nio.file.StandardOpenOption.*;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes files so a crash leaves either the old contents or the new ones, never a mix.
+ *
+ * A file is replaced by writing its new contents to a temporary sibling, forcing them to disk, and renaming the
+ * sibling over the file. The rename is atomic, so the file is never partially written, and the directory is forced
+ * afterwards so the rename itself survives a crash. Temporary siblings left by a crash were never renamed, so they
+ * can be deleted at startup.
+ *
+ * @author Adrian Hardt
+ */
+
+class SafeFiles {
+    public static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private static final int SCAN_BUFFER_SIZE = 4096;
+
+    /**
+     * Writes out everything in a buffer
+     * @param out channel to write to
+     * @param buffer buffer to write, in read mode
+     * @throws IOException Failure
+     */
+    public static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException{
+        while(buffer.hasRemaining()){
+            out.write(buffer);
+        }
+    }
+
+    /**
+     * Renames a temporary file, whose contents have been forced to disk, over the file it replaces
+     * @param temporary the temporary file
+     * @param target the file to replace
+     * @throws IOException Failure
+     */
+    public static void replace(Path temporary, Path target) throws IOException{
+        try {
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException a){
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory(target);
+    }
+
+    /**
+     * Forces the entries of the directory holding a file to disk, so a file just created, renamed or deleted there
+     * stays that way after a crash. Some platforms can't open directories, in which case this is left to the file
+     * system.
+     * @param file the file whose directory to force
+     */
+    public static void syncDirectory(Path file){
+        Path directory = file.toAbsolutePath().getParent();
+        if(directory == null){
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, READ)) {
+            channel.force(true);
+        }
+        catch (IOException a){
+            //directories can't be opened for reading on Windows, which orders renames itself
+        }
+    }
+
+    /**
+     * Deletes the temporary siblings of a file left by a crash, such as "database.txt.3.tmp" or "database.journal.tmp"
+     * @param file the file
+     * @return number of files deleted
+     */
+    public static int deleteTemporaries(Path file){
+        Path directory = file.toAbsolutePath().getParent();
+        if(directory == null || !Files.isDirectory(directory)){
+            return 0;
+        }
+        String name = file.getFileName().toString();
+        int deleted = 0;
+        try (DirectoryStream<Path> siblings = Files.newDirectoryStream(directory, name + "*" + TEMPORARY_SUFFIX)) {
+            for(Path sibling: siblings){
+                String middle = sibling.getFileName().toString();
+                middle = middle.substring(name.length(), middle.length() - TEMPORARY_SUFFIX.length());
+                if(middle.isEmpty() || middle.matches("\\.\\d+")){//only siblings this class could have written
+                    Files.deleteIfExists(sibling);
+                    deleted++;
+                }
+            }
+        }
+        catch (IOException x){
+            x.printStackTrace(new PrintStream(System.out));
+        }
+        if(deleted > 0){
+            syncDirectory(file);
+        }
+        return deleted;
+    }
+
+    /**
+     * Finds where the last line of a file starts
+     * @param channel the file
+     * @param size length of the file
+     * @return the offset after the last newline, or 0 if there is none
+     * @throws IOException Failure
+     */
+    public static long lastLineStart(FileChannel channel, long size) throws IOException{
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long end = size;
+        while(end > 0){
+            long start = Math.max(0, end - buffer.capacity());
+            buffer.clear();
+            buffer.limit((int)(end - start));
+            while(buffer.hasRemaining()){
+                if(channel.read(buffer, start + buffer.position()) < 0){
+                    break;
+                }
+            }
+            for(int i = buffer.position() - 1; i >= 0; i--){
+                if(buffer.get(i) == '\n'){
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,1038 @@
+package main.java.control;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Inverted index from the words in the names and descriptions of items to the items which contain them.
+ *
+ * Words are runs of letters and digits, compared without case. Each word has a posting list of the IDs of the items
+ * containing it and the word's weight in each, counting words in the name above words in the description. The lists
+ * are kept sorted by ID, so a search walks the list of its rarest word and searches the lists of the others, rather
+ * than scanning every item. Each item also keeps the words it contains, so only the lists of the words which changed
+ * are touched when it is edited or deleted. Words which no item contains anymore are dropped once they are a
+ * large part of the vocabulary, and the rest are numbered again.
+ *
+ * The index subscribes to the database and keeps itself up to date, on the thread which changed the database.
+ *
+ * @author Adrian Hardt
+ */
+
+public class SearchIndex implements Database.Listener {
+    public static final int NAME_WEIGHT = 3;//an occurrence in the name counts as much as this many in the description
+
+    //how much a word counts when it matches a typed fragment, by how closely it matches
+    private static final double EXACT = 1, PREFIX = .75, PART = .5, MISSPELLED = .25;
+    private static final int MIN_MISSPELLED_LENGTH = 4;//shorter fragments would be one edit away from too many words
+    private static final int TWO_EDIT_LENGTH = 8;//fragments at least this long may be two edits away from a word
+    private static final int SCAN_BATCH = 4096;//items scored per hold of the database's lock while finding
+    private static final int MIN_EMPTY_WORDS = 1024;//words no item contains which are kept before any are dropped
+    private static final int EMPTY_WORDS_SHARE = 4;//words are dropped once 1 in this many is contained by no item
+
+    /**
+     * The words of an item, as sorted word numbers, along with the weight of each
+     */
+    private static class Document{
+        private final int words[];
+        private final int weights[];
+
+        private Document(int words[], int weights[]){
+            this.words = words;
+            this.weights = weights;
+        }
+    }
+
+    /**
+     * Sorted IDs of the items which contain a word, along with the word's weight in each
+     */
+    private static class Postings{
+        private long ids[] = new long[2];
+        private int weights[] = new int[2];
+        private int size;
+        private boolean sorted = true;//false once an item is appended before the end of the order
+
+        /**
+         * Makes room for one more item
+         */
+        private void ensureCapacity(){
+            if(size == ids.length){
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+                weights = Arrays.copyOf(weights, ids.length);
+            }
+        }
+
+        /**
+         * Adds an item in its sorted position, or changes its weight if it is already there
+         * @param id the item's ID
+         * @param weight the word's weight in the item
+         */
+        private void put(long id, int weight){
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if(at >= 0){
+                weights[at] = weight;
+                return;
+            }
+            at = -(at + 1);
+            ensureCapacity();
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            System.arraycopy(weights, at, weights, at + 1, size - at);
+            ids[at] = id;
+            weights[at] = weight;
+            size++;
+        }
+
+        /**
+         * Adds an item to the end, leaving the list unsorted until sort is called
+         * @param id the item's ID
+         * @param weight the word's weight in the item
+         */
+        private void append(long id, int weight){
+            if(size > 0 && ids[size - 1] >= id){
+                sorted = false;
+            }
+            ensureCapacity();
+            ids[size] = id;
+            weights[size] = weight;
+            size++;
+        }
+
+        /**
+         * Sorts the list after items have been appended. Items are usually appended in ID order, so this only sorts
+         * when one wasn't.
+         */
+        private void sort(){
+            if(sorted){
+                return;
+            }
+            sorted = true;
+            Integer order[] = new Integer[size];
+            for(int i = 0; i < size; i++){
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingLong((Integer i) -> ids[i]));
+            long sortedIds[] = new long[ids.length];
+            int sortedWeights[] = new int[ids.length];
+            for(int i = 0; i < size; i++){
+                sortedIds[i] = ids[order[i]];
+                sortedWeights[i] = weights[order[i]];
+            }
+            ids = sortedIds;
+            weights = sortedWeights;
+        }
+
+        /**
+         * Removes an item
+         * @param id the item's ID
+         */
+        private void remove(long id){
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if(at < 0){
+                return;
+            }
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+            System.arraycopy(weights, at + 1, weights, at, size - at - 1);
+            size--;
+        }
+
+        /**
+         * Finds an item at or after a position with an exponential search, which is quick when the next match is near
+         * @param id the item's ID
+         * @param from position to search from
+         * @return the item's position, or -(insertion point + 1) if it isn't in the list
+         */
+        private int find(long id, int from){
+            int step = 1, end = from;
+            while(end < size && ids[end] < id){
+                from = end;
+                end += step;
+                step <<= 1;
+            }
+            return Arrays.binarySearch(ids, from, Math.min(end + 1, size), id);
+        }
+    }
+
+    /**
+     * The items which matched a search, in ID order, with how well they matched and, once looked up, their
+     * positions in the database
+     */
+    private static class Matches{
+        private long ids[] = new long[16];
+        private double scores[] = new double[16];
+        private int positions[] = new int[16];
+        private int size;
+
+        /**
+         * Adds a match
+         * @param id the item's ID
+         * @param score how well it matched
+         * @param position the item's position, or -1 if it hasn't been looked up
+         */
+        private void add(long id, double score, int position){
+            if(size == ids.length){
+                ids = Arrays.copyOf(ids, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            ids[size] = id;
+            scores[size] = score;
+            positions[size] = position;
+            size++;
+        }
+
+        /**
+         * Replaces a match, such as one which has been pushed out of the best matches kept
+         * @param match index of the match
+         * @param id the new item's ID
+         * @param score how well it matched
+         * @param position the item's position, or -1 if it hasn't been looked up
+         */
+        private void set(int match, long id, double score, int position){
+            ids[match] = id;
+            scores[match] = score;
+            positions[match] = position;
+        }
+
+        /**
+         * Checks whether an item would rank before a match
+         * @param id the item's ID
+         * @param score how well it matched
+         * @param match index of the match
+         * @return true if the item ranks before the match
+         */
+        private boolean ranksBefore(long id, double score, int match){
+            return score > scores[match] || (score == scores[match] && id < ids[match]);
+        }
+
+        /**
+         * Compares two matches, best first and then in the order they were added
+         * @param a index of one match
+         * @param b index of the other match
+         * @return negative if a ranks before b
+         */
+        private int compare(int a, int b){
+            int result = Double.compare(scores[b], scores[a]);
+            return (result != 0) ? result : Long.compare(ids[a], ids[b]);
+        }
+    }
+
+    /**
+     * A word of a query as it is being typed, along with the words it could be the start of, part of or a
+     * misspelling of
+     */
+    private static class Fragment{
+        private final String text;
+        private final HashMap<Integer,Double> closeness;//how closely each word matches, by word number
+        private boolean misspelled;//true if it only matched words it could be a misspelling of
+        private long reach;//number of items with a matching word, counting an item once per word
+
+        private Fragment(String text){
+            this.text = text;
+            this.closeness = new HashMap<>();
+        }
+
+        /**
+         * Checks whether every word this fragment matches is also matched by a fragment typed before it
+         * @param earlier the fragment typed before
+         * @return true if this fragment can only narrow down the earlier fragment's matches
+         */
+        private boolean narrows(Fragment earlier){
+            if(earlier.text.length() < 3){//short fragments match the starts of words
+                return text.length() < 3 && text.startsWith(earlier.text);
+            }
+            return text.contains(earlier.text);
+        }
+    }
+
+    /**
+     * The best items which matched a query as it was typed, best matches first
+     */
+    public static class Results{
+        private final String query;
+        private final Analytics.FilterMode filter;
+        private final ArrayList<Fragment> fragments;
+        private final long ids[];
+        private final int count;
+        private final int changes;
+
+        /**
+         * Gets the query which was searched for
+         * @return the query
+         */
+        public String getQuery(){
+            return query;
+        }
+
+        /**
+         * Gets the FilterMode the matches passed
+         * @return the FilterMode
+         */
+        public Analytics.FilterMode getFilterMode(){
+            return filter;
+        }
+
+        /**
+         * Gets the number of matches kept
+         * @return number of matches kept
+         */
+        public int size(){
+            return ids.length;
+        }
+
+        /**
+         * Gets the number of items which matched, including those past the limit which weren't kept
+         * @return number of matches
+         */
+        public int getCount(){
+            return count;
+        }
+
+        /**
+         * Checks whether every match was kept, so a later query can narrow these results down
+         * @return true if no match was left out by the limit
+         */
+        public boolean isComplete(){
+            return ids.length == count;
+        }
+
+        /**
+         * Gets the ID of a match
+         * @param index the match's rank, from 0
+         * @return the ID
+         */
+        public long getId(int index){
+            return ids[index];
+        }
+
+        /**
+         * Gets the IDs of the matches
+         * @return the IDs, best match first
+         */
+        public ArrayList<Long> getIds(){
+            ArrayList<Long> out = new ArrayList<>(ids.length);
+            for(long id: ids){
+                out.add(id);
+            }
+            return out;
+        }
+
+        /**
+         * Checks whether any word of the query only matched by its spelling being close
+         * @return true if a word was taken as a misspelling
+         */
+        public boolean isMisspelled(){
+            for(Fragment a: fragments){
+                if(a.misspelled){
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private Results(String query, Analytics.FilterMode filter, ArrayList<Fragment> fragments, long ids[], int count, int changes){
+            this.query = query;
+            this.filter = filter;
+            this.fragments = fragments;
+            this.ids = ids;
+            this.count = count;
+            this.changes = changes;
+        }
+    }
+
+    private final Database database;
+    private final HashMap<String,Integer> wordNumbers;
+    private final ArrayList<Postings> postings;//indexed by word number
+    private final HashMap<Long,Document> documents;
+    private final TrigramIndex trigrams;//pieces of every word, for finding words by a fragment or a misspelling
+    private int changes;//counts the changes made to the index, so results from before a change aren't narrowed down
+    private int emptyWords;//number of words which no item contains anymore
+    private int renumberings;//counts the times the words have been numbered again, so a search in progress starts over
+
+    /**
+     * Splits text into lowercase words of letters and digits
+     * @param text the text
+     * @return the words, in order, with repeats
+     */
+    public static ArrayList<String> words(String text){
+        ArrayList<String> out = new ArrayList<>();
+        int start = -1;
+        for(int i = 0; i <= text.length(); i++){
+            boolean wordCharacter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if(wordCharacter && start == -1){
+                start = i;
+            }
+            else if(!wordCharacter && start != -1){
+                out.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Gets the number of a word, giving it one if it hasn't been seen before
+     * @param word the word
+     * @return the word's number
+     */
+    private int number(String word){
+        Integer number = wordNumbers.get(word);
+        if(number == null){
+            number = postings.size();
+            wordNumbers.put(word, number);
+            postings.add(new Postings());
+            trigrams.add(number, word);
+            emptyWords++;//until an item containing it is added to its list
+        }
+        return number;
+    }
+
+    /**
+     * Adds an item to the posting list of a word in its sorted position, or changes its weight if it is already there
+     * @param word the word's number
+     * @param id the item's ID
+     * @param weight the word's weight in the item
+     */
+    private void put(int word, long id, int weight){
+        Postings list = postings.get(word);
+        if(list.size == 0){
+            emptyWords--;
+        }
+        list.put(id, weight);
+    }
+
+    /**
+     * Removes an item from the posting list of a word
+     * @param word the word's number
+     * @param id the item's ID
+     */
+    private void remove(int word, long id){
+        Postings list = postings.get(word);
+        int before = list.size;
+        list.remove(id);
+        if(before > 0 && list.size == 0){
+            emptyWords++;
+        }
+    }
+
+    /**
+     * Drops the words which no item contains anymore once they are a large part of the vocabulary, and numbers the
+     * rest again in the same order, so every posting list and list of pieces stays sorted
+     */
+    private void dropEmptyWords(){
+        if(emptyWords < MIN_EMPTY_WORDS || emptyWords < postings.size() / EMPTY_WORDS_SHARE){
+            return;
+        }
+        int renumbered[] = new int[postings.size()];
+        ArrayList<Postings> keptPostings = new ArrayList<>(postings.size() - emptyWords);
+        ArrayList<String> keptTexts = new ArrayList<>(postings.size() - emptyWords);
+        for(int word = 0; word < postings.size(); word++){
+            renumbered[word] = keptPostings.size();
+            if(postings.get(word).size > 0){
+                keptPostings.add(postings.get(word));
+                keptTexts.add(trigrams.text(word));
+            }
+        }
+        wordNumbers.clear();
+        postings.clear();
+        trigrams.clear();
+        for(int word = 0; word < keptPostings.size(); word++){
+            wordNumbers.put(keptTexts.get(word), word);
+            postings.add(keptPostings.get(word));
+            trigrams.add(word, keptTexts.get(word));
+        }
+        for(Document document: documents.values()){//every word of an item is in its posting list, so none was dropped
+            for(int i = 0; i < document.words.length; i++){
+                document.words[i] = renumbered[document.words[i]];
+            }
+        }
+        emptyWords = 0;
+        renumberings++;
+    }
+
+    /**
+     * Counts the weighted words of an item
+     * @param a the item
+     * @return the item's words and their weights
+     */
+    private Document document(Item a){
+        HashMap<Integer,Integer> weights = new HashMap<>();
+        for(String word: words(a.getDisplayName())){
+            weights.merge(number(word), NAME_WEIGHT, Integer::sum);
+        }
+        for(String word: words(a.getDescription())){
+            weights.merge(number(word), 1, Integer::sum);
+        }
+        int words[] = new int[weights.size()];
+        int i = 0;
+        for(int word: weights.keySet()){
+            words[i++] = word;
+        }
+        Arrays.sort(words);
+        int out[] = new int[words.length];
+        for(i = 0; i < words.length; i++){
+            out[i] = weights.get(words[i]);
+        }
+        return new Document(words, out);
+    }
+
+    /**
+     * Adds an item to the posting lists of its words, keeping them sorted
+     * @param a the item
+     */
+    private void insert(Item a){
+        Document document = document(a);
+        documents.put(a.getId(), document);
+        for(int i = 0; i < document.words.length; i++){
+            put(document.words[i], a.getId(), document.weights[i]);
+        }
+    }
+
+    /**
+     * Removes an item from the posting lists of its words
+     * @param id the item's ID
+     */
+    private void remove(long id){
+        Document document = documents.remove(id);
+        if(document == null){
+            return;
+        }
+        for(int word: document.words){
+            remove(word, id);
+        }
+    }
+
+    /**
+     * Adds a new item to the index
+     * @param item the new item
+     */
+    @Override
+    public void itemAdded(Item item){
+        changes++;
+        insert(item);
+    }
+
+    /**
+     * Adds a batch of new items to the index, appending to the posting lists and sorting each list it touched once
+     * @param added the new items
+     */
+    @Override
+    public void itemsAdded(List<Item> added){
+        changes++;
+        boolean touched[] = new boolean[postings.size()];
+        for(Item a: added){
+            if(documents.containsKey(a.getId())){
+                continue;
+            }
+            Document document = document(a);
+            documents.put(a.getId(), document);
+            if(touched.length < postings.size()){
+                touched = Arrays.copyOf(touched, Math.max(postings.size(), touched.length * 2));
+            }
+            for(int i = 0; i < document.words.length; i++){
+                Postings list = postings.get(document.words[i]);
+                if(list.size == 0){
+                    emptyWords--;
+                }
+                list.append(a.getId(), document.weights[i]);
+                touched[document.words[i]] = true;
+            }
+        }
+        for(int word = 0; word < touched.length; word++){
+            if(touched[word]){
+                postings.get(word).sort();
+            }
+        }
+    }
+
+    /**
+     * Moves an edited item to the posting lists of the words it contains now, touching only the lists of words
+     * which were added, removed or changed weight
+     * @param item the item as it is now
+     */
+    @Override
+    public void itemEdited(Item item){
+        changes++;
+        Document old = documents.get(item.getId());
+        if(old == null){
+            insert(item);
+            return;
+        }
+        Document now = document(item);
+        documents.put(item.getId(), now);
+        int i = 0, j = 0;
+        while(i < old.words.length || j < now.words.length){
+            if(j == now.words.length || (i < old.words.length && old.words[i] < now.words[j])){
+                remove(old.words[i++], item.getId());
+            }
+            else if(i == old.words.length || now.words[j] < old.words[i]){
+                put(now.words[j], item.getId(), now.weights[j]);
+                j++;
+            }
+            else{
+                if(old.weights[i] != now.weights[j]){
+                    put(now.words[j], item.getId(), now.weights[j]);
+                }
+                i++;
+                j++;
+            }
+        }
+        dropEmptyWords();
+    }
+
+    /**
+     * Removes a deleted item from the index
+     * @param item the deleted item
+     */
+    @Override
+    public void itemDeleted(Item item){
+        changes++;
+        remove(item.getId());
+        dropEmptyWords();
+    }
+
+    /**
+     * Indexes every item again
+     */
+    @Override
+    public void itemsReloaded(){
+        synchronized (database) {
+            wordNumbers.clear();
+            postings.clear();
+            documents.clear();
+            trigrams.clear();
+            emptyWords = 0;
+            renumberings++;
+            itemsAdded(database.getItems());
+        }
+    }
+
+    /**
+     * Finds the items which contain every word of a query and pass a filter, along with how well they match.
+     *
+     * The posting list of the rarest word is walked and the lists of the other words are searched from where their
+     * last search stopped, since every list is sorted by ID. An item's score adds up the weight of each word in it
+     * times how rare the word is. Positions are only looked up here when the filter needs the item's status or
+     * priority.
+     *
+     * @param query the words to search for
+     * @param filter the FilterMode matches must pass
+     * @return the matches, in ID order
+     */
+    private Matches matches(String query, Analytics.FilterMode filter){
+        Matches out = new Matches();
+        ArrayList<Postings> lists = new ArrayList<>();
+        for(String word: words(query)){
+            Integer number = wordNumbers.get(word);
+            if(number == null || postings.get(number).size == 0){//no item contains this word, so none contains them all
+                return out;
+            }
+            if(!lists.contains(postings.get(number))){
+                lists.add(postings.get(number));
+            }
+        }
+        if(lists.isEmpty()){
+            return out;
+        }
+        lists.sort(Comparator.comparingInt((Postings a) -> a.size));//rarest word first
+        final int COUNT = lists.size();
+        double rarity[] = new double[COUNT];
+        for(int w = 0; w < COUNT; w++){
+            rarity[w] = Math.log(1 + (double)documents.size() / lists.get(w).size);
+        }
+
+        List<Item> items = database.getItems();
+        ItemStore store = (items instanceof ItemStore) ? (ItemStore)items : null;
+        Postings rarest = lists.get(0);
+        int from[] = new int[COUNT];
+        candidates:
+        for(int k = 0; k < rarest.size; k++){
+            long id = rarest.ids[k];
+            double score = rarest.weights[k] * rarity[0];
+            for(int w = 1; w < COUNT; w++){
+                Postings list = lists.get(w);
+                int at = list.find(id, from[w]);
+                if(at < 0){
+                    from[w] = -(at + 1);
+                    continue candidates;
+                }
+                from[w] = at + 1;
+                score += list.weights[at] * rarity[w];
+            }
+            int position = -1;
+            if(filter != Analytics.FilterMode.NONE){
+                position = database.indexOf(id);
+                if(position == -1){
+                    continue;
+                }
+                boolean passes = (store != null) ? Analytics.matches(filter, store.getStatus(position), store.getPriority(position)) : Analytics.matches(filter, items.get(position));
+                if(!passes){
+                    continue;
+                }
+            }
+            out.add(id, score, position);
+        }
+        return out;
+    }
+
+    /**
+     * Gets a match as an item, looking up its position if it hasn't been yet
+     * @param found the matches
+     * @param match index of the match
+     * @return the item and its position
+     */
+    private Database.PositionedItem positioned(Matches found, int match){
+        int position = (found.positions[match] != -1) ? found.positions[match] : database.indexOf(found.ids[match]);
+        return new Database.PositionedItem(database.getItems().get(position), position);
+    }
+
+    /**
+     * Finds the items which contain every word of a query and pass a filter, best matches first. Words in an item's
+     * name count for more than words in its description, and rare words count for more than common ones.
+     * @param query the words to search for
+     * @param filter the FilterMode matches must pass
+     * @param offset number of ranked matches to skip
+     * @param limit largest number of matches to return, or Analytics.NO_LIMIT
+     * @return the page of matching items, best first
+     */
+    public ArrayList<Database.PositionedItem> search(String query, Analytics.FilterMode filter, int offset, int limit){
+        synchronized (database) {
+            Matches found = matches(query, filter);
+            ArrayList<Integer> ranked = new ArrayList<>();
+            if(limit == Analytics.NO_LIMIT){
+                for(int i = 0; i < found.size; i++){
+                    ranked.add(i);
+                }
+            }
+            else if(limit > 0){//keep only the best offset + limit matches in a bounded heap, rather than sorting them all
+                final int KEEP = (int)Math.min((long)offset + limit, found.size);//in long so a large page doesn't overflow, and no more than there are matches
+                if(KEEP <= 0){
+                    return new ArrayList<>();
+                }
+                PriorityQueue<Integer> heap = new PriorityQueue<>(KEEP, (Integer a, Integer b) -> found.compare(b, a));//the worst kept match is on top
+                for(int i = 0; i < found.size; i++){
+                    if(heap.size() < KEEP){
+                        heap.add(i);
+                    }
+                    else if(found.compare(i, heap.peek()) < 0){
+                        heap.poll();
+                        heap.add(i);
+                    }
+                }
+                ranked.addAll(heap);
+            }
+            ranked.sort(found::compare);
+            ArrayList<Database.PositionedItem> out = new ArrayList<>();
+            for(int i = offset; i < ranked.size(); i++){
+                out.add(positioned(found, ranked.get(i)));
+            }
+            return out;
+        }
+    }
+
+    /**
+     * Finds the items which contain every word of a query and pass a filter, ordered by a SortMode
+     * @param query the words to search for
+     * @param filter the FilterMode matches must pass
+     * @param sort the SortMode to order matches by
+     * @param offset number of sorted matches to skip
+     * @param limit largest number of matches to return, or Analytics.NO_LIMIT
+     * @return the page of matching items, sorted
+     */
+    public ArrayList<Database.PositionedItem> search(String query, Analytics.FilterMode filter, Analytics.SortMode sort, int offset, int limit){
+        synchronized (database) {
+            Matches found = matches(query, filter);
+            ArrayList<Database.PositionedItem> sorted = new ArrayList<>(found.size);
+            for(int i = 0; i < found.size; i++){
+                sorted.add(positioned(found, i));
+            }
+            Comparator<Item> order = Analytics.comparator(sort);
+            sorted.sort((Database.PositionedItem o1, Database.PositionedItem o2) -> {
+                int result = order.compare(o1.getItem(), o2.getItem());
+                return (result != 0) ? result : Integer.compare(o1.getIndex(), o2.getIndex());
+            });
+            int end = (limit == Analytics.NO_LIMIT) ? sorted.size() : (int)Math.min(sorted.size(), (long)offset + limit);
+            return new ArrayList<>(sorted.subList(Math.min(offset, end), end));
+        }
+    }
+
+    /**
+     * Finds the words a fragment could be the start of, part of or, if it isn't part of any word, a misspelling of
+     * @param text the fragment
+     * @param misspellings true to look for words the fragment could be a misspelling of
+     * @return the fragment and the words it matches
+     */
+    private Fragment fragment(String text, boolean misspellings){
+        Fragment out = new Fragment(text);
+        for(int word: trigrams.containing(text)){
+            int size = postings.get(word).size;
+            if(size == 0){//no item has this word anymore
+                continue;
+            }
+            String match = trigrams.text(word);
+            out.closeness.put(word, match.equals(text) ? EXACT : match.startsWith(text) ? PREFIX : PART);
+            out.reach += size;
+        }
+        if(out.closeness.isEmpty() && misspellings && text.length() >= MIN_MISSPELLED_LENGTH){
+            int maxDistance = (text.length() >= TWO_EDIT_LENGTH) ? 2 : 1;
+            for(Map.Entry<Integer,Integer> similar: trigrams.similar(text, maxDistance).entrySet()){
+                int size = postings.get(similar.getKey()).size;
+                if(size == 0){
+                    continue;
+                }
+                out.closeness.put(similar.getKey(), MISSPELLED / similar.getValue());
+                out.reach += size;
+            }
+            out.misspelled = true;
+        }
+        return out;
+    }
+
+    /**
+     * Scores an item against the fragments of a query. Each fragment counts its best matching word in the item, by
+     * how closely the word matches times the word's weight in the item and how rare the word is.
+     * @param id the item's ID
+     * @param fragments the fragments of the query
+     * @return the item's score, or 0 if a fragment matches none of its words
+     */
+    private double score(long id, ArrayList<Fragment> fragments){
+        Document document = documents.get(id);
+        if(document == null){
+            return 0;
+        }
+        double score = 0;
+        for(Fragment fragment: fragments){
+            double best = 0;
+            for(int i = 0; i < document.words.length; i++){
+                Double closeness = fragment.closeness.get(document.words[i]);
+                if(closeness != null){
+                    double rarity = Math.log(1 + (double)documents.size() / postings.get(document.words[i]).size);
+                    best = Math.max(best, closeness * document.weights[i] * rarity);
+                }
+            }
+            if(best == 0){
+                return 0;
+            }
+            score += best;
+        }
+        return score;
+    }
+
+    /**
+     * Finds the best items which match every word of a query as it is being typed, best matches first.
+     *
+     * Each word of the query matches the words of an item it is the start of, or, once it is three characters long,
+     * any word it is part of. Words which are part of no word can match words they are one edit from, or two edits
+     * for long words. Whole words count for more than starts of words, which count for more than parts and
+     * misspellings.
+     *
+     * Passing the results of the query typed just before lets the search check only those matches again, rather
+     * than every item, when the new query can only narrow them down, such as when a character has been typed at the
+     * end of a word or a word has been added, and when every match was kept.
+     *
+     * The items to check are copied out of the posting lists up front and then scored in batches, holding the
+     * database's lock for one batch at a time, so changes to the database don't wait for the whole search. Only the
+     * best matches up to the limit are kept, in a bounded heap, rather than ranking every match.
+     *
+     * @param query the query as typed so far
+     * @param filter the FilterMode matches must pass
+     * @param misspellings true to match words which could be misspelled
+     * @param limit largest number of matches to keep, or Analytics.NO_LIMIT
+     * @param previous the results of the query typed before, or null
+     * @return the matches
+     */
+    public Results find(String query, Analytics.FilterMode filter, boolean misspellings, int limit, Results previous){
+        ArrayList<Fragment> fragments = new ArrayList<>();
+        long candidates[];
+        boolean narrowing;
+        int startChanges, startRenumberings;
+        synchronized (database) {
+            for(String word: words(query)){
+                boolean repeated = false;
+                for(Fragment a: fragments){
+                    repeated |= a.text.equals(word);
+                }
+                if(!repeated){
+                    fragments.add(fragment(word, misspellings));
+                }
+            }
+            startChanges = changes;
+            startRenumberings = renumberings;
+            if(fragments.isEmpty()){
+                return new Results(query, filter, fragments, new long[0], 0, startChanges);
+            }
+            narrowing = narrows(previous, query, filter, fragments);
+            candidates = narrowing ? previous.ids : candidates(fragments);
+        }
+        if(!narrowing){
+            candidates = distinct(candidates);
+        }
+
+        Matches found = new Matches();
+        PriorityQueue<Integer> heap = (limit == Analytics.NO_LIMIT) ? null : new PriorityQueue<>(Math.max(1, Math.min(limit, candidates.length)), (Integer a, Integer b) -> found.compare(b, a));//the worst kept match is on top
+        int count = 0;
+        for(int from = 0; from < candidates.length; from += SCAN_BATCH){
+            synchronized (database) {
+                if(renumberings != startRenumberings){//the fragments' words have been numbered again since they were looked up
+                    return find(query, filter, misspellings, limit, null);
+                }
+                List<Item> items = database.getItems();
+                ItemStore store = (items instanceof ItemStore) ? (ItemStore)items : null;
+                for(int k = from; k < Math.min(from + SCAN_BATCH, candidates.length); k++){
+                    long id = candidates[k];
+                    double score = score(id, fragments);
+                    if(score == 0){
+                        continue;
+                    }
+                    int position = -1;
+                    if(filter != Analytics.FilterMode.NONE){
+                        position = database.indexOf(id);
+                        boolean passes = position != -1 && ((store != null) ? Analytics.matches(filter, store.getStatus(position), store.getPriority(position)) : Analytics.matches(filter, items.get(position)));
+                        if(!passes){
+                            continue;
+                        }
+                    }
+                    count++;
+                    if(heap == null){
+                        found.add(id, score, position);
+                    }
+                    else if(heap.size() < limit){
+                        found.add(id, score, position);
+                        heap.add(found.size - 1);
+                    }
+                    else if(limit > 0 && found.ranksBefore(id, score, heap.peek())){//pushes the worst kept match out
+                        int match = heap.poll();
+                        found.set(match, id, score, position);
+                        heap.add(match);
+                    }
+                }
+            }
+        }
+
+        Integer ranked[] = new Integer[found.size];
+        for(int i = 0; i < found.size; i++){
+            ranked[i] = i;
+        }
+        Arrays.sort(ranked, found::compare);
+        long ids[] = new long[found.size];
+        for(int i = 0; i < ids.length; i++){
+            ids[i] = found.ids[ranked[i]];
+        }
+        return new Results(query, filter, fragments, ids, count, startChanges);
+    }
+
+    /**
+     * Copies out the IDs of the items with a word matched by the fragment which matches the fewest, which every match
+     * of the query is among. Called holding the database's lock.
+     * @param fragments the fragments of the query
+     * @return the IDs, with repeats when an item has more than one of the words
+     */
+    private long[] candidates(ArrayList<Fragment> fragments){
+        Fragment fewest = fragments.get(0);
+        for(Fragment a: fragments){
+            if(a.reach < fewest.reach){
+                fewest = a;
+            }
+        }
+        long out[] = new long[(int)fewest.reach];
+        int size = 0;
+        for(int word: fewest.closeness.keySet()){
+            Postings list = postings.get(word);
+            System.arraycopy(list.ids, 0, out, size, list.size);
+            size += list.size;
+        }
+        return (size == out.length) ? out : Arrays.copyOf(out, size);
+    }
+
+    /**
+     * Removes repeated IDs, sorting them unless they are already in order without repeats, as the IDs from a single
+     * posting list are
+     * @param ids the IDs
+     * @return the IDs, each once
+     */
+    private static long[] distinct(long ids[]){
+        boolean increasing = true;
+        for(int i = 1; i < ids.length && increasing; i++){
+            increasing = ids[i - 1] < ids[i];
+        }
+        if(increasing){
+            return ids;
+        }
+        Arrays.sort(ids);
+        int size = 0;
+        for(int i = 0; i < ids.length; i++){
+            if(i == 0 || ids[i] != ids[i - 1]){
+                ids[size++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * Checks whether a query can only narrow down the results of the query typed before it
+     * @param previous the results of the query typed before, or null
+     * @param query the new query
+     * @param filter the FilterMode of the new query
+     * @param fragments the words of the new query
+     * @return true if every match of the new query is among the previous results
+     */
+    private boolean narrows(Results previous, String query, Analytics.FilterMode filter, ArrayList<Fragment> fragments){
+        if(previous == null || previous.changes != changes || previous.filter != filter || previous.fragments.isEmpty() || !previous.isComplete() || previous.isMisspelled()){
+            return false;
+        }
+        for(Fragment a: fragments){
+            if(a.misspelled){
+                return false;
+            }
+        }
+        for(Fragment earlier: previous.fragments){
+            boolean narrowed = false;
+            for(Fragment a: fragments){
+                narrowed |= a.narrows(earlier);
+            }
+            if(!narrowed){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Counts the items which contain every word of a query and pass a filter
+     * @param query the words to search for
+     * @param filter the FilterMode matches must pass
+     * @return number of matches
+     */
+    public int count(String query, Analytics.FilterMode filter){
+        synchronized (database) {
+            return matches(query, filter).size;
+        }
+    }
+
+    /**
+     * Stops keeping the index up to date
+     */
+    public void close(){
+        database.removeListener(this);
+    }
+
+    /**
+     * Constructs an index of a database and subscribes it to the database's changes
+     * @param database the database to index
+     */
+    public SearchIndex(Database database){
+        this.database = database;
+        this.wordNumbers = new HashMap<>();
+        this.postings = new ArrayList<>();
+        this.documents = new HashMap<>();
+        this.trigrams = new TrigramIndex();
+        synchronized (database) {
+            itemsReloaded();
+            database.addListener(this);
+        }
+    }
+}
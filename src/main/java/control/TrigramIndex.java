@@ -0,0 +1,236 @@
+package main.java.control;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Index from the three-character pieces of words to the words which contain them, used to find words by part of
+ * their text or by a misspelling.
+ *
+ * Each word is indexed with two start markers and one end marker around it, so its first one or two characters form
+ * pieces of their own and a fragment of one or two characters can be looked up as a prefix. Longer fragments are
+ * looked up by intersecting the lists of their pieces and then checking the few words left. Misspellings are found by
+ * counting the pieces words share with the misspelling, since each edit changes at most three pieces.
+ *
+ * Words are numbered by the caller in the order they are added, so every list stays sorted by appending.
+ *
+ * @author Adrian Hardt
+ */
+
+class TrigramIndex {
+    private static final char START = '\u0000', END = '\u0001';//neither is a letter or digit, so neither is in a word
+
+    /**
+     * Sorted numbers of the words which contain a piece
+     */
+    private static class WordList{
+        private int words[] = new int[2];
+        private int size;
+
+        /**
+         * Adds a word after every word already in the list
+         * @param word the word's number
+         */
+        private void append(int word){
+            if(size > 0 && words[size - 1] == word){//the word contains the piece more than once
+                return;
+            }
+            if(size == words.length){
+                words = Arrays.copyOf(words, size + (size >> 1) + 1);
+            }
+            words[size++] = word;
+        }
+    }
+
+    private final HashMap<Long,WordList> pieces;
+    private final ArrayList<String> texts;//indexed by word number
+    private int shared[];//scratch counts of pieces shared with a misspelling, indexed by word number
+
+    /**
+     * Packs three characters into one key
+     * @param a the first character
+     * @param b the second character
+     * @param c the third character
+     * @return the key
+     */
+    private static long key(char a, char b, char c){
+        return (long)a << 32 | (long)b << 16 | c;
+    }
+
+    /**
+     * Gets the pieces of a word with its markers
+     * @param word the word
+     * @return the keys of its pieces, with repeats
+     */
+    private static long[] markedPieces(String word){
+        String marked = "" + START + START + word + END;
+        long out[] = new long[marked.length() - 2];
+        for(int i = 0; i < out.length; i++){
+            out[i] = key(marked.charAt(i), marked.charAt(i + 1), marked.charAt(i + 2));
+        }
+        return out;
+    }
+
+    /**
+     * Adds a word. Each word must be numbered one higher than the last.
+     * @param word the word's number
+     * @param text the word
+     */
+    public void add(int word, String text){
+        texts.add(text);
+        for(long piece: markedPieces(text)){
+            pieces.computeIfAbsent(piece, (Long k) -> new WordList()).append(word);
+        }
+    }
+
+    /**
+     * Gets a word
+     * @param word the word's number
+     * @return the word
+     */
+    public String text(int word){
+        return texts.get(word);
+    }
+
+    /**
+     * Removes every word
+     */
+    public void clear(){
+        pieces.clear();
+        texts.clear();
+    }
+
+    /**
+     * Finds the words which start with a fragment of one or two characters, or contain a longer fragment
+     * @param fragment the fragment, in lowercase
+     * @return the numbers of the words, in order
+     */
+    public int[] containing(String fragment){
+        if(fragment.isEmpty()){
+            return new int[0];
+        }
+        if(fragment.length() < 3){
+            long piece = (fragment.length() == 1) ? key(START, START, fragment.charAt(0)) : key(START, fragment.charAt(0), fragment.charAt(1));
+            WordList list = pieces.get(piece);
+            return (list == null) ? new int[0] : Arrays.copyOf(list.words, list.size);
+        }
+
+        WordList lists[] = new WordList[fragment.length() - 2];
+        for(int i = 0; i < lists.length; i++){
+            lists[i] = pieces.get(key(fragment.charAt(i), fragment.charAt(i + 1), fragment.charAt(i + 2)));
+            if(lists[i] == null){
+                return new int[0];
+            }
+        }
+        Arrays.sort(lists, (WordList a, WordList b) -> Integer.compare(a.size, b.size));//walk the shortest list
+        int out[] = new int[lists[0].size];
+        int count = 0;
+        int from[] = new int[lists.length];
+        candidates:
+        for(int k = 0; k < lists[0].size; k++){
+            int word = lists[0].words[k];
+            for(int l = 1; l < lists.length; l++){
+                int at = Arrays.binarySearch(lists[l].words, from[l], lists[l].size, word);
+                if(at < 0){
+                    from[l] = -(at + 1);
+                    continue candidates;
+                }
+                from[l] = at + 1;
+            }
+            if(texts.get(word).contains(fragment)){//the pieces could be in the word without being next to each other
+                out[count++] = word;
+            }
+        }
+        return Arrays.copyOf(out, count);
+    }
+
+    /**
+     * Finds the words within an edit distance of a misspelling
+     * @param misspelling the misspelling, in lowercase
+     * @param maxDistance largest number of characters inserted, deleted or changed
+     * @return the numbers of the words, mapped to their distances from the misspelling
+     */
+    public HashMap<Integer,Integer> similar(String misspelling, int maxDistance){
+        HashMap<Integer,Integer> out = new HashMap<>();
+        long wanted[] = markedPieces(misspelling);
+        Arrays.sort(wanted);
+        int distinct = 0;
+        for(int i = 0; i < wanted.length; i++){
+            if(i == 0 || wanted[i] != wanted[i - 1]){
+                wanted[distinct++] = wanted[i];
+            }
+        }
+        final int MIN_SHARED = distinct - 3 * maxDistance;//each edit changes at most three pieces
+        if(MIN_SHARED < 1){//too short to narrow down by pieces
+            return out;
+        }
+        if(shared == null || shared.length < texts.size()){
+            shared = new int[Math.max(texts.size(), 16)];
+        }
+        ArrayList<Integer> touched = new ArrayList<>();
+        for(int i = 0; i < distinct; i++){
+            WordList list = pieces.get(wanted[i]);
+            if(list == null){
+                continue;
+            }
+            for(int k = 0; k < list.size; k++){
+                if(shared[list.words[k]]++ == 0){
+                    touched.add(list.words[k]);
+                }
+            }
+        }
+        for(int word: touched){
+            if(shared[word] >= MIN_SHARED){
+                int distance = distance(misspelling, texts.get(word), maxDistance);
+                if(distance <= maxDistance){
+                    out.put(word, distance);
+                }
+            }
+            shared[word] = 0;
+        }
+        return out;
+    }
+
+    /**
+     * Counts the characters which must be inserted, deleted or changed to turn one word into another, giving up once
+     * the count is over a limit
+     * @param a one word
+     * @param b the other word
+     * @param limit largest count worth knowing
+     * @return the count, or limit + 1 if it is over the limit
+     */
+    public static int distance(String a, String b, int limit){
+        if(Math.abs(a.length() - b.length()) > limit){
+            return limit + 1;
+        }
+        int previous[] = new int[b.length() + 1], current[] = new int[b.length() + 1];
+        for(int j = 0; j <= b.length(); j++){
+            previous[j] = j;
+        }
+        for(int i = 1; i <= a.length(); i++){
+            current[0] = i;
+            int best = current[0];
+            for(int j = 1; j <= b.length(); j++){
+                int change = previous[j - 1] + ((a.charAt(i - 1) == b.charAt(j - 1)) ? 0 : 1);
+                current[j] = Math.min(change, Math.min(previous[j], current[j - 1]) + 1);
+                best = Math.min(best, current[j]);
+            }
+            if(best > limit){//every later row is at least this far
+                return limit + 1;
+            }
+            int swap[] = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], limit + 1);
+    }
+
+    /**
+     * Constructs an empty index
+     */
+    public TrigramIndex(){
+        this.pieces = new HashMap<>();
+        this.texts = new ArrayList<>();
+    }
+}
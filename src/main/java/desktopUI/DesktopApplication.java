@@ -7,9 +7,13 @@ import javafx.scene.layout.*;
 import javafx.scene.shape.Rectangle;
 import javafx.scene.text.Text;
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
-import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
+import javafx.geometry.Pos;
+import javafx.geometry.Side;
 import javafx.stage.Stage;
 
 import main.java.util.*;
@@ -17,7 +21,9 @@ import main.java.control.*;
 
 import java.awt.Dimension;
 
-import java.util.ArrayList;
+import java.io.IOException;
+
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -56,6 +62,7 @@ public class DesktopApplication extends Application{
 
 	private Maybe<Database.PositionedItem> activeItem;
 	private Database database;
+	private Analytics.Views views;
 
 	private HBox rootPane;
 	private static final String ROOT_PANE_ID = "rootPane";
@@ -64,6 +71,18 @@ public class DesktopApplication extends Application{
 	private Analytics.FilterMode filterMode;
 	private VBox listPane;
 	private static final String LIST_PANE_ID = "listPane";
+	private ListView<Long> itemList;
+	private ObservableList<Long> itemIds;//IDs of the Items in the shown view, in order
+	private Analytics.View shownView;
+	private boolean updatingItemList;//true while the item list is changed by the program rather than the user
+	private ProgressBar loadProgress;
+	private SearchIndex searchIndex;
+	private LiveSearch liveSearch;
+	private TextField searchField;
+	private NameCompletions nameCompletions;
+	private static final int NAME_SUGGESTIONS = 5;//most names suggested under a name field at once
+	private static final String LOCKED_WHILE_LOADING_CLASS = "lockedWhileLoading";//buttons which change Items, disabled until the database is loaded
+	private static final int LOAD_PAGE_SIZE = 200;//Items shown before the rest of the database is loaded, and Items added to the list at a time after that
 
 	private VBox infoPane;
 	private static final String INFO_PANE_ID = "infoPane";
@@ -97,13 +116,243 @@ public class DesktopApplication extends Application{
 	}
 
 	/**
-	 * Builds the left side of the display
+	 * Builds the left side of the display, or brings it up to date if it has already been built
 	 */
 	private void updateLeftPane(){
-		updateListPane();
+		if(this.itemList == null){
+			updateListPane();
+		}
+		showView();
 		replaceNode(LIST_PANE_ID,this.listPane);
 	}
 
+	/**
+	 * Checks whether the item list is showing search results rather than a view
+	 * @return true if something has been typed into the search field
+	 */
+	private boolean isSearching(){
+		return this.searchField != null && !this.searchField.getText().trim().isEmpty();
+	}
+
+	/**
+	 * Shows the view for the current sort and filter modes in the item list, and selects the active Item in it.
+	 * While searching, searches again instead, since the Items or the filter may have changed.
+	 */
+	private void showView(){
+		if(isSearching()){
+			this.liveSearch.refresh(this.searchField.getText(), this.filterMode);
+			return;
+		}
+		Analytics.View view = this.views.get(this.filterMode,this.sortMode);
+		this.updatingItemList = true;
+		if(view != this.shownView){
+			if(this.shownView != null){
+				this.shownView.setListener(null);
+			}
+			this.shownView = view;
+			this.itemIds.setAll(view.getIds());
+			view.setListener(new ItemListUpdater());
+		}
+		this.itemList.getSelectionModel().clearSelection();
+		if(this.activeItem.isValid()){//scrolls to and selects the currently active Item (this is used to make sure that the user's selection isn't undone when the left pane is updated)
+			int position = this.shownView.indexOf(this.activeItem.get().getId());
+			if(position != -1){
+				this.itemList.scrollTo(position);
+				this.itemList.getFocusModel().focus(position);//note: focused object is the one object in the entire operating system that receives keyboard input
+				this.itemList.getSelectionModel().select(position);//note: selected object means it is marked
+			}
+		}
+		this.updatingItemList = false;
+	}
+
+	/**
+	 * Shows the best results of a search in the item list, best match first, and selects the active Item in them
+	 * @param results the results
+	 */
+	private void showResults(SearchIndex.Results results){
+		if(!isSearching()){//the search was cleared while it ran
+			return;
+		}
+		if(this.shownView != null){//the list no longer follows the view, and is shown again from scratch once the search is cleared
+			this.shownView.setListener(null);
+			this.shownView = null;
+		}
+		this.updatingItemList = true;
+		this.itemIds.setAll(results.getIds());
+		this.itemList.getSelectionModel().clearSelection();
+		if(this.activeItem.isValid()){
+			int position = this.itemIds.indexOf(this.activeItem.get().getId());
+			if(position != -1){
+				this.itemList.getSelectionModel().select(position);
+			}
+		}
+		this.updatingItemList = false;
+	}
+
+	/**
+	 * Suggests names of existing Items under a name field as the user types, most used and most recent first
+	 * @param nameField the field to suggest names for
+	 */
+	private void suggestNames(TextField nameField){
+		ContextMenu suggestions = new ContextMenu();
+		nameField.textProperty().addListener(
+			(ObservableValue<? extends String> observable, String oldText, String newText) ->
+			{
+				if(!nameField.isFocused() || newText.trim().isEmpty()){//only suggest names while the user is typing one
+					suggestions.hide();
+					return;
+				}
+				suggestions.getItems().clear();
+				for(String name: this.nameCompletions.complete(newText, NAME_SUGGESTIONS)){
+					if(name.equals(newText.trim())){//it has already been typed
+						continue;
+					}
+					MenuItem suggestion = new MenuItem(name);
+					suggestion.setOnAction(
+						(ActionEvent event) ->
+							{
+								nameField.setText(name);
+								nameField.positionCaret(name.length());
+								suggestions.hide();//picking a name isn't typing one, so don't suggest more
+							}
+					);
+					suggestions.getItems().add(suggestion);
+				}
+				if(suggestions.getItems().isEmpty()){
+					suggestions.hide();
+				}
+				else if(!suggestions.isShowing()){
+					suggestions.show(nameField, Side.BOTTOM, 0, 0);
+				}
+			}
+		);
+		nameField.focusedProperty().addListener(
+			(ObservableValue<? extends Boolean> observable, Boolean wasFocused, Boolean focused) ->
+			{
+				if(!focused){
+					suggestions.hide();
+				}
+			}
+		);
+	}
+
+	/**
+	 * Copies each change to the shown view into the item list's model, so the list only redraws the rows which changed
+	 */
+	private class ItemListUpdater implements Analytics.View.Listener{
+		/**
+		 * Inserts an Item's ID into the list
+		 * @param position the Item's position in the view
+		 * @param id the Item's ID
+		 */
+		@Override
+		public void entryInserted(int position, long id){
+			boolean updating = updatingItemList;
+			updatingItemList = true;
+			itemIds.add(position, id);
+			updatingItemList = updating;
+		}
+
+		/**
+		 * Inserts the IDs of a run of Items into the list in one change
+		 * @param position the first Item's position in the view
+		 * @param ids the Items' IDs
+		 */
+		@Override
+		public void entriesInserted(int position, List<Long> ids){
+			boolean updating = updatingItemList;
+			updatingItemList = true;
+			itemIds.addAll(position, ids);
+			updatingItemList = updating;
+		}
+
+		/**
+		 * Removes an Item's ID from the list
+		 * @param position the position the Item had in the view
+		 * @param id the Item's ID
+		 */
+		@Override
+		public void entryRemoved(int position, long id){
+			boolean updating = updatingItemList;
+			updatingItemList = true;
+			itemIds.remove(position);
+			updatingItemList = updating;
+		}
+
+		/**
+		 * Replaces every ID in the list
+		 */
+		@Override
+		public void entriesReloaded(){
+			boolean updating = updatingItemList;
+			updatingItemList = true;
+			itemIds.setAll(shownView.getIds());
+			if(activeItem.isValid()){//setAll drops the selection, so select the active Item again without scrolling to it
+				int position = shownView.indexOf(activeItem.get().getId());
+				if(position != -1){
+					itemList.getSelectionModel().select(position);
+				}
+			}
+			updatingItemList = updating;
+		}
+	}
+
+	/**
+	 * Shows the progress of loading the database in the background, and lets Items be changed once it's done
+	 */
+	private class DatabaseLoadListener implements Database.LoadListener{
+		/**
+		 * Updates the progress bar
+		 * @param fraction how much of the database has been read, from 0 to 1
+		 */
+		@Override
+		public void batchLoaded(double fraction){
+			if(loadProgress != null){
+				loadProgress.setProgress(fraction);
+			}
+		}
+
+		/**
+		 * Hides the progress bar and enables the buttons which change Items
+		 */
+		@Override
+		public void loadFinished(){
+			if(loadProgress != null){
+				loadProgress.setVisible(false);
+			}
+			if(isSearching()){//the search results don't include the Items loaded since they were found
+				liveSearch.refresh(searchField.getText(), filterMode);
+			}
+			if(rootPane != null){//panes which aren't shown are rebuilt with their buttons enabled when they're next shown
+				for(Node locked: rootPane.lookupAll("." + LOCKED_WHILE_LOADING_CLASS)){
+					locked.setDisable(false);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Displays an Item in the item list, looked up by its ID when the row is shown
+	 */
+	private class ItemCell extends ListCell<Long>{
+		/**
+		 * Shows the Item with the given ID in this cell
+		 * @param id the Item's ID
+		 * @param empty true if the cell has no Item
+		 */
+		@Override
+		protected void updateItem(Long id, boolean empty){
+			super.updateItem(id, empty);
+			Item item = (empty || id == null) ? null : database.getItemById(id);
+			setGraphic(null);
+			if(item == null){
+				setText(null);
+				return;
+			}
+			setText(item.shortenName());
+		}
+	}
+
 	/**
 	 * Searches for the currently active right display
 	 * @return the active right display, null if no known right displays are in use
@@ -271,12 +520,13 @@ public class DesktopApplication extends Application{
 					toggleFinished.setMaxSize(BUTTON_SIZE.getFirst(), BUTTON_SIZE.getSecond());
 					toggleFinished.setPrefSize(BUTTON_SIZE.getFirst(), BUTTON_SIZE.getSecond());
 					toggleFinished.getStyleClass().add("button");
+					toggleFinished.setDisable(this.database.isLoading());//Items can't be changed until they have all been loaded
+					toggleFinished.getStyleClass().add(LOCKED_WHILE_LOADING_CLASS);
 					toggleFinished.setOnAction(
 						(ActionEvent event) ->
 							{
 								if(this.activeItem.isValid()){
-									activeItem.get().getItem().toggleStatus();
-									this.database.editItem(this.activeItem.get());
+									this.database.toggleStatus(this.activeItem.get().getIndex());
 									this.activeItem.set(this.database.getPositionedItem(this.activeItem.get().getIndex()));
 									updateRightPane();
 									updateLeftPane();//update the left pane since changing the status may affect the sorting or filtering
@@ -291,6 +541,8 @@ public class DesktopApplication extends Application{
 					editItem.setMaxSize(BUTTON_SIZE.getFirst(), BUTTON_SIZE.getSecond());
 					editItem.setPrefSize(BUTTON_SIZE.getFirst(), BUTTON_SIZE.getSecond());
 					editItem.getStyleClass().add("button");
+					editItem.setDisable(this.database.isLoading());//Items can't be changed until they have all been loaded
+					editItem.getStyleClass().add(LOCKED_WHILE_LOADING_CLASS);
 					editItem.setOnAction(
 						(ActionEvent event) ->
 							{
@@ -309,6 +561,8 @@ public class DesktopApplication extends Application{
 					deleteItem.setMaxSize(BUTTON_SIZE.getFirst(), BUTTON_SIZE.getSecond());
 					deleteItem.setPrefSize(BUTTON_SIZE.getFirst(), BUTTON_SIZE.getSecond());
 					deleteItem.getStyleClass().add("button");
+					deleteItem.setDisable(this.database.isLoading());//Items can't be changed until they have all been loaded
+					deleteItem.getStyleClass().add(LOCKED_WHILE_LOADING_CLASS);
 					deleteItem.setOnAction(
 						(ActionEvent event) ->
 							{
@@ -334,7 +588,6 @@ public class DesktopApplication extends Application{
 											switch (deleteConfirmationDialogResult.get().getButtonData()) {
 												case YES:
 													this.database.deleteItem(this.activeItem.get().getIndex());
-													this.database.fillList();
 													this.activeItem = new Maybe<>();
 													updateRootPane();
 													break;
@@ -357,11 +610,11 @@ public class DesktopApplication extends Application{
 	}
 
 	/**
-	 * Constructs the listPane which is the list of Items which the user can select to view more details
+	 * Constructs the listPane which is the list of Items which the user can select to view more details.
+	 * It's only built once; updateLeftPane keeps its contents up to date.
 	 */
 	private void updateListPane(){
 		this.listPane.getChildren().clear();
-		this.database.fillList();
 		final double WIDTH_PERCENT = .33;
 		final double WIDTH = DEFAULT_SIZE.width * WIDTH_PERCENT;
 
@@ -430,15 +683,9 @@ public class DesktopApplication extends Application{
 						(ActionEvent event) ->
 							{
 								if(this.filterMode != filterBy.getValue()){//if the filter excludes the active Item, then clear the active Item from the screen
-									boolean resetRightPane = true;
 									if(this.activeItem.isValid()) {
-										for (Database.PositionedItem a : Analytics.filter(filterBy.getValue(), this.database.getPositionedItems())) {
-											if(this.activeItem.get().getItem().equals(a.getItem())){
-												resetRightPane = false;
-												break;
-											}
-										}
-										if(resetRightPane){
+										Item active = this.database.getItemById(this.activeItem.get().getId());
+										if(active == null || !Analytics.matches(filterBy.getValue(), active)){
 											this.activeItem = new Maybe<>();
 											updateRightPane();
 										}
@@ -451,6 +698,27 @@ public class DesktopApplication extends Application{
 				}
 				itemListMenu.getChildren().addAll(addNew,sortBy,filterBy);
 			}
+			this.searchField = new TextField();//searches as the user types, showing the best matches instead of the view
+			{
+				this.searchField.setPromptText("Search");
+				this.searchField.getStyleClass().add("bodyText");
+				this.searchField.setMinWidth(WIDTH);
+				this.searchField.setMaxWidth(WIDTH);
+				this.searchField.setPrefWidth(WIDTH);
+
+				this.searchField.textProperty().addListener(
+					(ObservableValue<? extends String> observable, String oldText, String newText) ->
+					{
+						if(newText.trim().isEmpty()){
+							this.liveSearch.cancel();
+							showView();
+						}
+						else{
+							this.liveSearch.update(newText, this.filterMode);
+						}
+					}
+				);
+			}
 			StackPane itemListBorder = new StackPane();
 			{
 				itemListBorder.setMinWidth(WIDTH);
@@ -460,74 +728,26 @@ public class DesktopApplication extends Application{
 				itemListBorder.setPrefHeight(ITEM_LIST_BORDER_HEIGHT);
 				itemListBorder.getStyleClass().add("paneBorder");
 
-				ListView<String> itemList = new ListView<>();
+				this.itemList = new ListView<>(this.itemIds);
 				{
-					itemList.getStyleClass().add("itemList");
+					this.itemList.getStyleClass().add("itemList");
 
 					final int LIST_WIDTH = (int)(WIDTH - 2 * PADDING);
-					itemList.setMinWidth(LIST_WIDTH);
-					itemList.setMaxWidth(LIST_WIDTH);
-					itemList.setPrefWidth(LIST_WIDTH);
-					//itemList.setFixedCellSize(SECTION_HEIGHT);//used to set cell height
+					this.itemList.setMinWidth(LIST_WIDTH);
+					this.itemList.setMaxWidth(LIST_WIDTH);
+					this.itemList.setPrefWidth(LIST_WIDTH);
+					//this.itemList.setFixedCellSize(SECTION_HEIGHT);//used to set cell height
 
-					ArrayList<String> itemNames = new ArrayList<>();
+					this.itemList.setCellFactory((ListView<Long> list) -> new ItemCell());//cells are only made for the visible rows, and look up their Item when shown
 
-					final ArrayList<Database.PositionedItem> itemsToDisplay = Analytics.filter(this.filterMode,Analytics.sort(this.sortMode,this.database.getPositionedItems()));//final to be used in ListChangeListener
-
-					for(Database.PositionedItem positionedItem: itemsToDisplay){
-						itemNames.add(positionedItem.getItem().shortenName());
-					}
-
-					itemList.setItems(FXCollections.observableArrayList(itemNames));
-
-					/*
-					itemList.setCellFactory(lv -> new ListCell<Integer>(){//attempt at coloring Item names by priority (Not Yet Implemented)
-						@Override
-						protected void updateItem(Integer name, boolean empty){
-							super.updateItem(name, empty);
-							if (empty) {
-								setText(null);
-								setGraphic(null);
-							} else {
-								setText(database.getItem(name).shortenName());
-								setGraphic(null);
-								switch (database.getItem(name).getStatus()){
-									case FINISHED:
-										getStyleClass().add("finishedItemCell");
-										break;
-									case UNFINISHED:
-										switch (database.getItem(name).getPriority()){
-											case LOW:
-												getStyleClass().add("lowPriorityItemCell");
-												break;
-											case MEDIUM:
-												getStyleClass().add("mediumPriorityItemCell");
-												break;
-											case HIGH:
-												getStyleClass().add("highPriorityItemCell");
-												break;
-											default:
-												Util.nyi(Util.getFileName(),Util.getLineNumber());
-										}
-										break;
-									default:
-										Util.nyi(Util.getFileName(),Util.getLineNumber());
-								}
-							}
-						}
-					});
-					*/
-					if(this.activeItem.isValid()){//scrolls to and selects the currently active Item (this is used to make sure that the user's selection isn't undone when the left pane is updated)
-						itemList.scrollTo(this.activeItem.get().getIndex());
-						itemList.getFocusModel().focus(this.activeItem.get().getIndex());//note: focused object is the one object in the entire operating system that receives keyboard input
-						itemList.getSelectionModel().select(this.activeItem.get().getIndex());//note: selected object means it is marked
-					}
-
-					itemList.getSelectionModel().getSelectedIndices().addListener(//updates the infoPane when a new Item is selected
-						(ListChangeListener.Change<? extends Integer> c) ->
+					this.itemList.getSelectionModel().selectedItemProperty().addListener(//updates the infoPane when a new Item is selected
+						(ObservableValue<? extends Long> observable, Long oldId, Long newId) ->
 						{
+							if(this.updatingItemList || newId == null){//ignore selection changes made while the list is updated
+								return;
+							}
 							this.rightDisplay = RightDisplay.ITEM_INFO;
-							this.activeItem.set(itemsToDisplay.get(itemList.getSelectionModel().getSelectedIndex()));
+							this.activeItem.set(this.database.getPositionedItemById(newId));
 							updateRightPane();
 						}
 					);
@@ -535,12 +755,20 @@ public class DesktopApplication extends Application{
 					{
 						Rectangle itemListPlaceHolder = new Rectangle(WIDTH - 2 * PADDING,610);
 						itemListPlaceHolder.getStyleClass().add("itemListPlaceHolder");
-						itemList.setPlaceholder(itemListPlaceHolder);
+						this.itemList.setPlaceholder(itemListPlaceHolder);
 					}
 				}
-				itemListBorder.getChildren().add(itemList);
+				itemListBorder.getChildren().add(this.itemList);
+
+				this.loadProgress = new ProgressBar(0);//shows how much of the database has been loaded, while it's loaded in the background
+				{
+					this.loadProgress.setPrefWidth(WIDTH - 4 * PADDING);
+					this.loadProgress.setVisible(this.database.isLoading());
+					StackPane.setAlignment(this.loadProgress, Pos.BOTTOM_CENTER);
+				}
+				itemListBorder.getChildren().add(this.loadProgress);
 			}
-			this.listPane.getChildren().addAll(itemListMenu, itemListBorder);//order matters
+			this.listPane.getChildren().addAll(itemListMenu, this.searchField, itemListBorder);//order matters
 		}
 	}
 
@@ -575,6 +803,7 @@ public class DesktopApplication extends Application{
 					setName.setMinWidth(TEXT_INPUT_WIDTH);
 					setName.setMaxWidth(TEXT_INPUT_WIDTH);
 					setName.setPrefWidth(TEXT_INPUT_WIDTH);
+					suggestNames(setName);
 				}
 				HBox setPriority = new HBox(PADDING);
 				{
@@ -617,6 +846,8 @@ public class DesktopApplication extends Application{
 				saveNewItemButton.setMaxSize(BUTTON_SIZE.getFirst(), BUTTON_SIZE.getSecond());
 				saveNewItemButton.setPrefSize(BUTTON_SIZE.getFirst(), BUTTON_SIZE.getSecond());
 				saveNewItemButton.getStyleClass().add("button");
+				saveNewItemButton.setDisable(this.database.isLoading());//Items can't be changed until they have all been loaded
+				saveNewItemButton.getStyleClass().add(LOCKED_WHILE_LOADING_CLASS);
 				saveNewItemButton.setOnAction(
 					(ActionEvent event) ->
 						{
@@ -645,7 +876,7 @@ public class DesktopApplication extends Application{
 									}
 								}
 							} else if(!itemName.equals("")){//only save the new Item if it has a name (since it's required)
-								this.database.writeItem(new Item(itemName, itemDescription, itemPriority));
+								this.database.addItem(new Item(itemName, itemDescription, itemPriority));
 								updateLeftPane();
 								this.activeItem.set(this.database.getPositionedItem(this.database.getItems().size() - 1));
 								this.rightDisplay = RightDisplay.ITEM_INFO;
@@ -705,6 +936,7 @@ public class DesktopApplication extends Application{
 					editName.setMinWidth(TEXT_INPUT_WIDTH);
 					editName.setMaxWidth(TEXT_INPUT_WIDTH);
 					editName.setPrefWidth(TEXT_INPUT_WIDTH);
+					suggestNames(editName);
 				}
 				HBox editPriority = new HBox(PADDING);
 				{
@@ -748,6 +980,8 @@ public class DesktopApplication extends Application{
 				saveNewItemButton.setMaxSize(BUTTON_SIZE.getFirst(), BUTTON_SIZE.getSecond());
 				saveNewItemButton.setPrefSize(BUTTON_SIZE.getFirst(), BUTTON_SIZE.getSecond());
 				saveNewItemButton.getStyleClass().add("button");
+				saveNewItemButton.setDisable(this.database.isLoading());//Items can't be changed until they have all been loaded
+				saveNewItemButton.getStyleClass().add(LOCKED_WHILE_LOADING_CLASS);
 				saveNewItemButton.setOnAction(
 					(ActionEvent event) ->
 						{
@@ -823,6 +1057,34 @@ public class DesktopApplication extends Application{
 		this.mainStage.show();
 	}
 
+	/**
+	 * Saves any changes the database is still writing in the background before the application exits
+	 */
+	@Override
+	public void stop(){
+		this.database.flush();
+	}
+
+	/**
+	 * Tells the user that changes couldn't be saved. Called on the database's background writer.
+	 * @param failure what went wrong
+	 */
+	private void showWriteFailure(IOException failure){
+		Platform.runLater(
+			() ->
+			{
+				Alert writeFailureAlert = new Alert(Alert.AlertType.ERROR);
+				writeFailureAlert.initOwner(this.mainStage);
+				writeFailureAlert.getDialogPane().getStyleClass().add("alert");
+
+				writeFailureAlert.setTitle("Save Failed");
+				writeFailureAlert.setHeaderText("Your latest changes could not be saved.");
+				writeFailureAlert.setContentText(failure.getMessage());
+				writeFailureAlert.show();
+			}
+		);
+	}
+
 	/**
 	 * Acts as the constructor for this class
 	 */
@@ -830,7 +1092,13 @@ public class DesktopApplication extends Application{
 		this.mainStage = new Stage();//note: cannot edit this until after it has been set to the primaryStage
 
 		this.database = new Database();
-		this.database.fillList();
+		this.views = new Analytics.Views(this.database);
+		this.searchIndex = new SearchIndex(this.database);
+		this.liveSearch = new LiveSearch(this.searchIndex, Platform::runLater, this::showResults);
+		this.nameCompletions = new NameCompletions(this.database);
+		this.database.fillListLazily(LOAD_PAGE_SIZE, Platform::runLater, new DatabaseLoadListener());//shows the first page of the file straight away, in date order, and loads the rest in the background
+		this.database.setWriteFailureHandler(this::showWriteFailure);
+		this.database.setAsynchronous(true);//save on the background writer so the window doesn't freeze while writing
 
 		this.rightDisplay = RightDisplay.ITEM_INFO;
 		this.activeItem = (this.database.getItems().size() > 0) ? new Maybe<>(new Database.PositionedItem(this.database,0)) : new Maybe<>();
@@ -843,6 +1111,8 @@ public class DesktopApplication extends Application{
 
 		this.listPane = new VBox(PADDING);
 		this.listPane.setId(LIST_PANE_ID);
+		this.itemIds = FXCollections.observableArrayList();
+		this.updatingItemList = false;
 
 		this.infoPane = new VBox();
 		this.infoPane.setId(INFO_PANE_ID);
@@ -11,53 +11,107 @@ import java.util.Comparator;
  */
 public class AlphanumComparator implements Comparator<String>
 {
-	private final boolean isDigit(char ch)
+	/**
+	 * A String prepared for sorting: lowercased and split into its digit and non-digit chunks once,
+	 * so that comparing two keys gives the same result as compare without repeating that work
+	 *
+	 * @author Logan Traffas
+	 */
+	public static class Key implements Comparable<Key>
 	{
-		return ch >= 48 && ch <= 57;
-	}
+		private final String lower;
+		private final int[] ends;//the index after the end of each chunk
 
-	/** Length of string is passed in for improved efficiency (only need to calculate it once) **/
-	private final String getChunk(String s, int slength, int marker)
-	{
-		StringBuilder chunk = new StringBuilder();
-		char c = s.charAt(marker);
-		chunk.append(c);
-		marker++;
-		if (isDigit(c))
+		/**
+		 * Compares with another key the same way compare does with their Strings
+		 * @param that the key to compare with
+		 * @return negative, zero or positive as this key sorts before, with or after that key
+		 */
+		public int compareTo(Key that)
 		{
-			while (marker < slength)
+			int thisStart = 0, thatStart = 0;
+			for (int chunk = 0; chunk < this.ends.length && chunk < that.ends.length; chunk++)
 			{
-				c = s.charAt(marker);
-				if (!isDigit(c))
-					break;
-				chunk.append(c);
-				marker++;
+				int thisEnd = this.ends[chunk], thatEnd = that.ends[chunk];
+				int thisChunkLength = thisEnd - thisStart, thatChunkLength = thatEnd - thatStart;
+				int result = 0;
+				if (isDigit(this.lower.charAt(thisStart)) && isDigit(that.lower.charAt(thatStart)))
+				{
+					result = thisChunkLength - thatChunkLength;
+					for (int i = 0; result == 0 && i < thisChunkLength; i++)
+					{
+						result = this.lower.charAt(thisStart + i) - that.lower.charAt(thatStart + i);
+					}
+				} else
+				{
+					int length = Math.min(thisChunkLength, thatChunkLength);
+					for (int i = 0; result == 0 && i < length; i++)
+					{
+						result = this.lower.charAt(thisStart + i) - that.lower.charAt(thatStart + i);
+					}
+					if (result == 0)
+						result = thisChunkLength - thatChunkLength;
+				}
+				if (result != 0)
+					return result;
+				thisStart = thisEnd;
+				thatStart = thatEnd;
 			}
-		} else
+			return this.lower.length() - that.lower.length();
+		}
+
+		/**
+		 * Builds the key for a String
+		 * @param s the String
+		 */
+		public Key(String s)
 		{
-			while (marker < slength)
+			char[] chars = s.toCharArray();
+			for (int i = 0; i < chars.length; i++)//one character at a time, exactly as compare lowercases
+			{
+				chars[i] = Character.toLowerCase(chars[i]);
+			}
+			this.lower = new String(chars);
+			int length = lower.length();
+			int chunks = 0;
+			for (int i = 0; i < length; i++)
 			{
-				c = s.charAt(marker);
-				if (isDigit(c))
-					break;
-				chunk.append(c);
-				marker++;
+				if (i == 0 || isDigit(lower.charAt(i)) != isDigit(lower.charAt(i - 1)))
+					chunks++;
+			}
+			this.ends = new int[chunks];
+			int chunk = 0;
+			for (int i = 1; i <= length; i++)
+			{
+				if (i == length || isDigit(lower.charAt(i)) != isDigit(lower.charAt(i - 1)))
+					this.ends[chunk++] = i;
 			}
 		}
-		return chunk.toString();
 	}
 
-	public int compare(String s1, String s2)
+	private static final boolean isDigit(char ch)
 	{
-		/**
-		 * Addiction: ignore capitalization when sorting
-		 *
-		 * @author Logan Traffas
-		 */
+		return ch >= 48 && ch <= 57;
+	}
+
+	/** Length of string is passed in for improved efficiency (only need to calculate it once) **/
+	private static final int getChunkEnd(String s, int slength, int marker)
+	{
+		boolean digit = isDigit(s.charAt(marker));
+		marker++;
+		while (marker < slength && isDigit(s.charAt(marker)) == digit)
 		{
-			s1 = Util.stringToLowerCase(s1);
-			s2 = Util.stringToLowerCase(s2);
+			marker++;
 		}
+		return marker;
+	}
+
+	/**
+	 * Compares two Strings in place, walking each chunk with a cursor instead of copying it out,
+	 * so that no memory is allocated per call
+	 */
+	public int compare(String s1, String s2)
+	{
 		int thisMarker = 0;
 		int thatMarker = 0;
 		int s1Length = s1.length();
@@ -65,25 +119,24 @@ public class AlphanumComparator implements Comparator<String>
 
 		while (thisMarker < s1Length && thatMarker < s2Length)
 		{
-			String thisChunk = getChunk(s1, s1Length, thisMarker);
-			thisMarker += thisChunk.length();
+			int thisChunkEnd = getChunkEnd(s1, s1Length, thisMarker);
+			int thisChunkLength = thisChunkEnd - thisMarker;
 
-			String thatChunk = getChunk(s2, s2Length, thatMarker);
-			thatMarker += thatChunk.length();
+			int thatChunkEnd = getChunkEnd(s2, s2Length, thatMarker);
+			int thatChunkLength = thatChunkEnd - thatMarker;
 
 			// If both chunks contain numeric characters, sort them numerically
 			int result = 0;
-			if (isDigit(thisChunk.charAt(0)) && isDigit(thatChunk.charAt(0)))
+			if (isDigit(s1.charAt(thisMarker)) && isDigit(s2.charAt(thatMarker)))
 			{
 				// Simple chunk comparison by length.
-				int thisChunkLength = thisChunk.length();
-				result = thisChunkLength - thatChunk.length();
+				result = thisChunkLength - thatChunkLength;
 				// If equal, the first different number counts
 				if (result == 0)
 				{
 					for (int i = 0; i < thisChunkLength; i++)
 					{
-						result = thisChunk.charAt(i) - thatChunk.charAt(i);
+						result = s1.charAt(thisMarker + i) - s2.charAt(thatMarker + i);
 						if (result != 0)
 						{
 							return result;
@@ -92,11 +145,25 @@ public class AlphanumComparator implements Comparator<String>
 				}
 			} else
 			{
-				result = thisChunk.compareTo(thatChunk);
+				/**
+				 * Addiction: ignore capitalization when sorting, one character at a time
+				 *
+				 * @author Logan Traffas
+				 */
+				int length = Math.min(thisChunkLength, thatChunkLength);
+				for (int i = 0; result == 0 && i < length; i++)
+				{
+					result = Character.toLowerCase(s1.charAt(thisMarker + i)) - Character.toLowerCase(s2.charAt(thatMarker + i));
+				}
+				if (result == 0)
+					result = thisChunkLength - thatChunkLength;
 			}
 
 			if (result != 0)
 				return result;
+
+			thisMarker = thisChunkEnd;
+			thatMarker = thatChunkEnd;
 		}
 
 		return s1Length - s2Length;
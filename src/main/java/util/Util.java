@@ -45,6 +45,22 @@ public class Util{
 		return lowerCase;
 	}
 
+	/**
+	 * Checks whether a section of a sequence of characters is equal to a String, without copying the section
+	 * @param s the characters to check
+	 * @param start index of the first character of the section
+	 * @param end index after the last character of the section
+	 * @param value the String to compare with
+	 * @return true if the section and the String contain the same characters
+	 */
+	public static boolean regionEquals(CharSequence s, int start, int end, String value){
+		if(end - start != value.length()) return false;
+		for(int i = 0; i < value.length(); i++){
+			if(s.charAt(start + i) != value.charAt(i)) return false;
+		}
+		return true;
+	}
+
 	public static String removeSpaces(final String ORIGINAL){
 		String s = "";
 		for(char c: ORIGINAL.toCharArray()){